@@ -7,4 +7,7 @@ import java.lang.annotation.Target;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.PARAMETER)
-public @interface HostRefParam {}
+public @interface HostRefParam {
+    /** {@link Ownership#GUEST}, {@link Ownership#BORROWED} or {@link Ownership#TRANSFERRED}. */
+    Ownership value() default Ownership.GUEST;
+}
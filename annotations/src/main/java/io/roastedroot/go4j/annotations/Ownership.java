@@ -0,0 +1,22 @@
+package io.roastedroot.go4j.annotations;
+
+/**
+ * Who releases a host ref crossing the boundary, see {@link HostRefParam} and {@link
+ * ReturnsHostRef}. The generated glue emits the matching release calls.
+ */
+public enum Ownership {
+    /**
+     * The default: the generated glue releases nothing and leaves the ref to the guest, as before
+     * ownership could be declared.
+     */
+    GUEST,
+    /**
+     * The receiver only uses the ref during the call (parameters), or until the outermost guest
+     * call returns (results): the side that created it releases it.
+     */
+    BORROWED,
+    /** Parameters only: the receiver takes the ref over and is responsible for releasing it. */
+    TRANSFERRED,
+    /** Results only: the caller owns the returned ref and releases it once read. */
+    OWNED
+}
@@ -7,4 +7,7 @@ import java.lang.annotation.Target;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
-public @interface ReturnsHostRef {}
+public @interface ReturnsHostRef {
+    /** {@link Ownership#GUEST}, {@link Ownership#OWNED} or {@link Ownership#BORROWED}. */
+    Ownership value() default Ownership.GUEST;
+}
@@ -0,0 +1,79 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips through the default imports: the guest reads a Java value through {@code
+ * asGoString}, {@code asGoBytes} or {@code asGoUint32} and hands a copy back through {@code
+ * allocJava}. Each operation frees both refs, so the ref store stays flat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultImportsBenchmark {
+
+    @Param({Machines.INTERPRETER, Machines.RUNTIME_COMPILER, Machines.BUILD_TIME})
+    private String machine;
+
+    @Param({"16", "1024", "65536"})
+    private int size;
+
+    private Go go;
+    private GoFunction roundtripString;
+    private GoFunction roundtripBytes;
+    private GoFunction roundtripUint32;
+    private String string;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        go = Machines.builder("datatypes", machine).withWasi().build();
+        go.run();
+        roundtripString = go.function("roundtripString");
+        roundtripBytes = go.function("roundtripBytes");
+        roundtripUint32 = go.function("roundtripUint32");
+
+        string = "ab".repeat(size / 2);
+        bytes = new byte[size];
+        Arrays.fill(bytes, (byte) 42);
+    }
+
+    private Object roundtrip(GoFunction function, Object value) {
+        var ref = go.allocJavaObj(value);
+        var result = (int) function.call(ref)[0];
+        go.freeJavaObj(ref);
+        return go.takeJavaObj(result);
+    }
+
+    @Benchmark
+    public Object string() {
+        return roundtrip(roundtripString, string);
+    }
+
+    @Benchmark
+    public Object bytes() {
+        return roundtrip(roundtripBytes, bytes);
+    }
+
+    @Benchmark
+    public Object uint32() {
+        return roundtrip(roundtripUint32, size);
+    }
+}
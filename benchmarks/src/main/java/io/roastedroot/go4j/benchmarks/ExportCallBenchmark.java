@@ -0,0 +1,52 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a call into an export with scalar arguments: {@link Go#exec} looks the export up on
+ * every call, a {@link GoFunction} handle is resolved once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportCallBenchmark {
+
+    @Param({Machines.INTERPRETER, Machines.RUNTIME_COMPILER, Machines.BUILD_TIME})
+    private String machine;
+
+    private Go go;
+    private GoFunction add;
+
+    @Setup
+    public void setup() {
+        go = Machines.builder("export", machine).withWasi().build();
+        go.run();
+        add = go.function("add");
+    }
+
+    @Benchmark
+    public long exec() {
+        return go.exec("add", new long[] {12, 2})[0];
+    }
+
+    @Benchmark
+    public long function() {
+        return add.call(12, 2)[0];
+    }
+}
@@ -0,0 +1,166 @@
+package io.roastedroot.go4j.benchmarks;
+
+import com.dylibso.chicory.runtime.ImportFunction;
+import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.ValType;
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import io.roastedroot.go4j.annotations.Builtins;
+import io.roastedroot.go4j.annotations.GuestFunction;
+import io.roastedroot.go4j.annotations.HostFunction;
+import io.roastedroot.go4j.annotations.HostRefParam;
+import io.roastedroot.go4j.annotations.Invokables;
+import io.roastedroot.go4j.annotations.Ownership;
+import io.roastedroot.go4j.annotations.ReturnsHostRef;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of the glue generated by the annotation processor over hand-written code, on the
+ * hello-it module: {@code test1} calls back into Java twice, passing a Java string ref from one
+ * host function to the other, {@code test2} does the same without arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratedGlueBenchmark {
+
+    @Invokables
+    interface GoApi {
+        @GuestFunction
+        void test1();
+
+        @GuestFunction
+        void test2();
+    }
+
+    @Builtins("from_java")
+    static class JavaApi {
+        int checked;
+
+        @ReturnsHostRef(Ownership.BORROWED)
+        @HostFunction("my_java_func")
+        public String add(int x, int y) {
+            return "hello " + (x + y);
+        }
+
+        @HostFunction("my_java_check")
+        public void check(@HostRefParam String value) {
+            checked += value.length();
+        }
+
+        @ReturnsHostRef(Ownership.BORROWED)
+        @HostFunction("my_java_ref")
+        public String myRef() {
+            return "a pure java string";
+        }
+
+        @HostFunction("my_java_ref_check")
+        public void myRefCheck(@HostRefParam String value) {
+            checked += value.length();
+        }
+    }
+
+    @Param({Machines.INTERPRETER, Machines.RUNTIME_COMPILER, Machines.BUILD_TIME})
+    private String machine;
+
+    private GoApi generated;
+    private GoFunction test1;
+    private GoFunction test2;
+    private int checked;
+
+    @Setup
+    public void setup() {
+        var generatedGo =
+                Machines.builder("hello-it", machine)
+                        .withWasi()
+                        .withAdditionalImport(JavaApi_Builtins.toAdditionalImports(new JavaApi()))
+                        .build();
+        generatedGo.run();
+        generated = GoApi_Invokables.create(generatedGo);
+
+        var handWrittenGo =
+                Machines.builder("hello-it", machine)
+                        .withWasi()
+                        .withAdditionalImport(this::handWritten)
+                        .build();
+        handWrittenGo.run();
+        test1 = handWrittenGo.function("test1");
+        test2 = handWrittenGo.function("test2");
+    }
+
+    private ImportFunction[] handWritten(Go go) {
+        var refResult = new long[1];
+        var refType = FunctionType.of(List.of(), List.of(ValType.I32));
+        var checkType = FunctionType.of(List.of(ValType.I32), List.of());
+        return new ImportFunction[] {
+            new com.dylibso.chicory.runtime.HostFunction(
+                    "from_java",
+                    "my_java_func",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32), List.of(ValType.I32)),
+                    (inst, args) -> {
+                        var value = "hello " + ((int) args[0] + (int) args[1]);
+                        refResult[0] = go.freeAfterCall(go.allocJavaObj(value));
+                        return refResult;
+                    }),
+            new com.dylibso.chicory.runtime.HostFunction(
+                    "from_java",
+                    "my_java_check",
+                    checkType,
+                    (inst, args) -> {
+                        checked += ((String) go.getJavaObj((int) args[0])).length();
+                        return null;
+                    }),
+            new com.dylibso.chicory.runtime.HostFunction(
+                    "from_java",
+                    "my_java_ref",
+                    refType,
+                    (inst, args) -> {
+                        refResult[0] = go.freeAfterCall(go.allocJavaObj("a pure java string"));
+                        return refResult;
+                    }),
+            new com.dylibso.chicory.runtime.HostFunction(
+                    "from_java",
+                    "my_java_ref_check",
+                    checkType,
+                    (inst, args) -> {
+                        checked += ((String) go.getJavaObj((int) args[0])).length();
+                        return null;
+                    })
+        };
+    }
+
+    @Benchmark
+    public void generatedTest1() {
+        generated.test1();
+    }
+
+    @Benchmark
+    public void handWrittenTest1() {
+        test1.call();
+    }
+
+    @Benchmark
+    public void generatedTest2() {
+        generated.test2();
+    }
+
+    @Benchmark
+    public void handWrittenTest2() {
+        test2.call();
+    }
+}
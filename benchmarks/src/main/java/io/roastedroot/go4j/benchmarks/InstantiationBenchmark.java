@@ -0,0 +1,50 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoModule;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Instances of the export module created per second, through a builder for each instance and
+ * through a {@link GoModule} template. The runtime compiler is left out: without a template it
+ * compiles the module for every instance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstantiationBenchmark {
+
+    @Param({Machines.INTERPRETER, Machines.BUILD_TIME})
+    private String machine;
+
+    private GoModule template;
+
+    @Setup
+    public void setup() {
+        template = Machines.builder("export", machine).withWasi().buildModule();
+    }
+
+    @Benchmark
+    public Go builder() {
+        return Machines.builder("export", machine).withWasi().build();
+    }
+
+    @Benchmark
+    public Go template() {
+        return template.newInstance();
+    }
+}
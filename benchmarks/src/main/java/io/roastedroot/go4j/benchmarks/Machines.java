@@ -0,0 +1,45 @@
+package io.roastedroot.go4j.benchmarks;
+
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import io.roastedroot.go4j.Go;
+
+/**
+ * Machines the boundary suites run on: the interpreter, the runtime compiler and the classes
+ * compiled at build time by the chicory compiler plugin (see the pom), for the {@link
+ * Modules#TINYGO_WASIP1} flavor of the modules.
+ */
+final class Machines {
+    static final String INTERPRETER = "interpreter";
+    static final String RUNTIME_COMPILER = "runtime-compiler";
+    static final String BUILD_TIME = "build-time";
+
+    private Machines() {}
+
+    static Go.Builder builder(String module, String machine) {
+        switch (machine) {
+            case INTERPRETER:
+                return Go.builder(Modules.wasm(module, Modules.TINYGO_WASIP1));
+            case RUNTIME_COMPILER:
+                return Go.builder(Modules.wasm(module, Modules.TINYGO_WASIP1))
+                        .withMachineFactory(MachineFactoryCompiler::compile);
+            case BUILD_TIME:
+                return buildTime(module);
+            default:
+                throw new IllegalArgumentException("Unknown machine: " + machine);
+        }
+    }
+
+    private static Go.Builder buildTime(String module) {
+        switch (module) {
+            case "export":
+                return Go.builder(ExportModule.load()).withMachineFactory(ExportModule::create);
+            case "datatypes":
+                return Go.builder(DatatypesModule.load())
+                        .withMachineFactory(DatatypesModule::create);
+            case "hello-it":
+                return Go.builder(HelloItModule.load()).withMachineFactory(HelloItModule::create);
+            default:
+                throw new IllegalArgumentException("Module not compiled at build time: " + module);
+        }
+    }
+}
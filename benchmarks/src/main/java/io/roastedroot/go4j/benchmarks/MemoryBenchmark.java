@@ -0,0 +1,89 @@
+package io.roastedroot.go4j.benchmarks;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasi.WasiOptions;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import io.roastedroot.go4j.DirectMemory;
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ByteArrayMemory} against the off-heap {@link DirectMemory}: {@code slices} runs a whole
+ * program (instantiation, data segments, memory growth), {@code withdep} generates a QR code and
+ * transfers the resulting bytes back to Java.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBenchmark {
+
+    @Param({"array", "direct"})
+    private String memory;
+
+    @Param({Modules.TINYGO_WASIP1, Modules.GO_WASIP1})
+    private String mode;
+
+    private Function<MemoryLimits, Memory> memoryFactory;
+    private WasmModule slices;
+    private WasiOptions slicesWasi;
+    private Go withdep;
+    private GoFunction genqr;
+    private int url;
+
+    @Setup
+    public void setup() {
+        memoryFactory = memory.equals("direct") ? DirectMemory::new : ByteArrayMemory::new;
+
+        slices = Parser.parse(Modules.wasm("slices", mode));
+        slicesWasi =
+                WasiOptions.builder()
+                        .withStdout(OutputStream.nullOutputStream())
+                        .withStderr(OutputStream.nullOutputStream())
+                        .withArguments(List.of("program-name", "1,2,3"))
+                        .build();
+
+        withdep =
+                Go.builder(Modules.wasm("withdep", mode))
+                        .withWasi()
+                        .withMemoryFactory(memoryFactory)
+                        .build();
+        withdep.run();
+        genqr = withdep.function("genqr");
+        url = withdep.allocJavaObj("https://chicory.dev");
+    }
+
+    @Benchmark
+    public int slices() {
+        var go = Go.builder(slices).withWasi(slicesWasi).withMemoryFactory(memoryFactory).build();
+        return go.run();
+    }
+
+    @Benchmark
+    public int withdep() {
+        var resultRef = (int) genqr.call(url)[0];
+        var result = (byte[]) withdep.getJavaObj(resultRef);
+        withdep.freeJavaObj(resultRef);
+        return result.length;
+    }
+}
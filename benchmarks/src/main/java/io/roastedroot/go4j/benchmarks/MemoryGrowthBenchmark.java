@@ -0,0 +1,69 @@
+package io.roastedroot.go4j.benchmarks;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import io.roastedroot.go4j.DirectMemory;
+import io.roastedroot.go4j.SegmentedMemory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Grows a memory to {@code megabytes} the way the Go runtime does, a few pages at a time, to
+ * compare memories copying their content on every growth with {@link SegmentedMemory}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MemoryGrowthBenchmark {
+    private static final int STEP_PAGES = 4;
+
+    @Param({"array", "direct", "segmented"})
+    private String memory;
+
+    @Param({"64", "512"})
+    private int megabytes;
+
+    private Function<MemoryLimits, Memory> memoryFactory;
+
+    @Setup
+    public void setup() {
+        switch (memory) {
+            case "array":
+                memoryFactory = ByteArrayMemory::new;
+                break;
+            case "direct":
+                memoryFactory = DirectMemory::new;
+                break;
+            default:
+                memoryFactory = SegmentedMemory::new;
+                break;
+        }
+    }
+
+    @Benchmark
+    public int grow() {
+        var pages = megabytes * 16;
+        var mem = memoryFactory.apply(new MemoryLimits(1, pages));
+        while (mem.pages() + STEP_PAGES <= pages) {
+            var previous = mem.grow(STEP_PAGES);
+            // touch the new pages, as the allocator does
+            mem.writeLong(Memory.bytes(previous), previous);
+        }
+        return mem.readInt(Memory.bytes(mem.pages()) - Integer.BYTES);
+    }
+}
@@ -0,0 +1,71 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import io.roastedroot.go4j.GoMetricsRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording metrics on the shortest calls: a scalar export, and a string round trip going
+ * through two host functions, without metrics and with a {@link GoMetricsRegistry}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({Machines.INTERPRETER, Machines.BUILD_TIME})
+    private String machine;
+
+    @Param({"none", "registry"})
+    private String metrics;
+
+    private Go go;
+    private GoFunction add;
+    private GoFunction roundtripString;
+    private int stringRef;
+
+    @Setup
+    public void setup() {
+        var export = Machines.builder("export", machine).withWasi();
+        var datatypes = Machines.builder("datatypes", machine).withWasi();
+        if (metrics.equals("registry")) {
+            var registry = new GoMetricsRegistry();
+            export.withMetrics(registry);
+            datatypes.withMetrics(registry);
+        }
+        var exportGo = export.build();
+        exportGo.run();
+        add = exportGo.function("add");
+        go = datatypes.build();
+        go.run();
+        roundtripString = go.function("roundtripString");
+        stringRef = go.allocJavaObj("hello");
+    }
+
+    @Benchmark
+    public long add() {
+        return add.call(12, 2)[0];
+    }
+
+    @Benchmark
+    public int roundtripString() {
+        var ref = (int) roundtripString.call(stringRef)[0];
+        go.freeJavaObj(ref);
+        return ref;
+    }
+}
@@ -0,0 +1,24 @@
+package io.roastedroot.go4j.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/** Access to the test modules of core, packaged with the benchmarks. */
+final class Modules {
+    static final String TINYGO_WASIP1 = "tinygo-wasip1";
+    static final String GO_WASIP1 = "go-wasip1";
+
+    private Modules() {}
+
+    static byte[] wasm(String name, String mode) {
+        var resource = "/wasm/" + name + "-" + mode + ".wasm";
+        try (var in = Modules.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Module not found: " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
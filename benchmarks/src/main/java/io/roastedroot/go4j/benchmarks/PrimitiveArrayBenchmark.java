@@ -0,0 +1,67 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Go to Java transfer of {@code size} ints, one ref per element ({@code SetBuilder.Int}) against a
+ * single {@code SetBuilder.Ints} call, to find the size from which the bulk transfer pays off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveArrayBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "64", "256", "1024"})
+    private int size;
+
+    @Param({Modules.TINYGO_WASIP1, Modules.GO_WASIP1})
+    private String mode;
+
+    private Go go;
+    private GoFunction perElement;
+    private GoFunction bulk;
+
+    @Setup
+    public void setup() {
+        go = Go.builder(Modules.wasm("datatypes", mode)).withWasi().build();
+        go.run();
+        if (!go.hasFunction("intsBulk")) {
+            throw new IllegalStateException(
+                    "The datatypes module predates SetBuilder.Ints, rebuild the test modules");
+        }
+        perElement = go.function("intsPerElement");
+        bulk = go.function("intsBulk");
+    }
+
+    @Benchmark
+    public int perElement() {
+        var ref = (int) perElement.call(size)[0];
+        var last = go.getJavaInt(ref);
+        go.freeJavaObj(ref);
+        return last;
+    }
+
+    @Benchmark
+    public int bulk() {
+        var ref = (int) bulk.call(size)[0];
+        var values = (int[]) go.getJavaObj(ref);
+        go.freeJavaObj(ref);
+        return values[values.length - 1];
+    }
+}
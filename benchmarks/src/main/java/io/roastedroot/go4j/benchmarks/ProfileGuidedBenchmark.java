@@ -0,0 +1,58 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to the first QR code of the withdep module, with every function compiled at build time
+ * and with only the functions of its profile ({@code src/main/profiles/withdep.profile}), the
+ * others staying interpreted. Every fork loads the classes once, so the first iteration includes
+ * class loading.
+ *
+ * <p>Tracks the experimental profile-guided compilation: {@code hot} currently starts slower than
+ * {@code all}, as Chicory still parses the bodies of the interpreted functions. {@code all}
+ * remains the configuration to use.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ProfileGuidedBenchmark {
+
+    @Param({"all", "hot"})
+    private String compiled;
+
+    @Benchmark
+    public Object firstCall() {
+        Go.Builder builder;
+        switch (compiled) {
+            case "all":
+                builder =
+                        Go.builder(WithdepModule.load()).withMachineFactory(WithdepModule::create);
+                break;
+            case "hot":
+                builder =
+                        Go.builder(WithdepHotModule.load())
+                                .withMachineFactory(WithdepHotModule::create);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown compilation: " + compiled);
+        }
+        var go = builder.withWasi().build();
+        go.run();
+        var url = go.allocJavaObj("https://chicory.dev");
+        return go.getJavaObj((int) go.exec("genqr", new long[] {url})[0]);
+    }
+}
@@ -0,0 +1,68 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ref store traffic of a single instance: refs allocated and freed from Java, interned refs as
+ * passed for borrowed parameters, and refs allocated by the guest through {@code allocJava}. Only
+ * the last one runs guest code, the other two don't depend on the machine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefStoreBenchmark {
+
+    @Param({Machines.INTERPRETER, Machines.RUNTIME_COMPILER, Machines.BUILD_TIME})
+    private String machine;
+
+    private Go go;
+    private GoFunction roundtripUint32;
+    private Object value;
+    private int valueRef;
+
+    @Setup
+    public void setup() {
+        go = Machines.builder("datatypes", machine).withWasi().build();
+        go.run();
+        roundtripUint32 = go.function("roundtripUint32");
+        value = "value";
+        valueRef = go.allocJavaObj(42);
+    }
+
+    @Benchmark
+    public int allocFree() {
+        var ref = go.allocJavaObj(value);
+        go.freeJavaObj(ref);
+        return ref;
+    }
+
+    @Benchmark
+    public int internFree() {
+        var ref = go.internJavaObj(value);
+        go.freeJavaObj(ref);
+        return ref;
+    }
+
+    @Benchmark
+    public int guestAlloc() {
+        var ref = (int) roundtripUint32.call(valueRef)[0];
+        go.freeJavaObj(ref);
+        return ref;
+    }
+}
@@ -0,0 +1,92 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.RefStore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Register/get/free round trips on a single store shared by 1, 8 and 64 threads.
+ *
+ * <p>The legacy store is process-wide and not thread safe, so it is measured behind the single
+ * global lock a caller would need to share it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefStoreContentionBenchmark {
+    private static final Object VALUE = new Object();
+
+    private RefStore refs;
+    private LegacyRefStore legacy;
+
+    @Setup
+    public void setup() {
+        refs = new RefStore();
+        legacy = new LegacyRefStore();
+    }
+
+    private Object roundtrip() {
+        int ref = refs.registerRef(VALUE);
+        Object result = refs.get(ref);
+        refs.free(ref);
+        return result;
+    }
+
+    private Object legacyRoundtrip() {
+        synchronized (LegacyRefStore.class) {
+            int ref = legacy.registerRef(VALUE);
+            Object result = legacy.get(ref);
+            legacy.free(ref);
+            return result;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object refStore1Thread() {
+        return roundtrip();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object refStore8Threads() {
+        return roundtrip();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object refStore64Threads() {
+        return roundtrip();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object legacy1Thread() {
+        return legacyRoundtrip();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object legacy8Threads() {
+        return legacyRoundtrip();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object legacy64Threads() {
+        return legacyRoundtrip();
+    }
+}
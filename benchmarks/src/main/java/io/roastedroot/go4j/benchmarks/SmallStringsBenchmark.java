@@ -0,0 +1,66 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoFunction;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pushes 1M small strings through {@code asGoString}: every {@code update} call of the export
+ * module converts two Java strings, each one allocated and freed through the guest allocator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SmallStringsBenchmark {
+    private static final int STRINGS = 1_000_000;
+
+    @Param({Modules.TINYGO_WASIP1, Modules.GO_WASIP1})
+    private String mode;
+
+    /** Size of the transfer arena, 0 to send every string through wasm_malloc. */
+    @Param({"0", "65536"})
+    private int arena;
+
+    private Go go;
+    private GoFunction update;
+    private int aRef;
+    private int bRef;
+
+    @Setup
+    public void setup() {
+        go = Go.builder(Modules.wasm("export", mode)).withWasi().withTransferArena(arena).build();
+        go.run();
+        if (!go.hasFunction("wasm_malloc_nozero")) {
+            // the results would measure the allocator of a previous go4j.go
+            throw new IllegalStateException(
+                    "export-" + mode + " predates the slab allocator, rebuild the modules of core");
+        }
+        update = go.function("update");
+        aRef = go.allocJavaObj("3");
+        bRef = go.allocJavaObj("11");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public void asGoString() {
+        for (int i = 0; i < STRINGS / 2; i++) {
+            var resultRef = (int) update.call(aRef, bRef)[0];
+            go.freeJavaObj(resultRef);
+        }
+    }
+}
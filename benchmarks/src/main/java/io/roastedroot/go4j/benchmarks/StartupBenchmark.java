@@ -0,0 +1,86 @@
+package io.roastedroot.go4j.benchmarks;
+
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import io.roastedroot.go4j.Go;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to a running, compiled instance of the export module: compiling it with {@link
+ * MachineFactoryCompiler}, loading the classes from a populated compilation cache, and using the
+ * classes compiled at build time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(3)
+public class StartupBenchmark {
+
+    @Param({"cold-compile", "cache-hit", Machines.BUILD_TIME})
+    private String startup;
+
+    private byte[] wasm;
+    private Path cache;
+
+    @Setup
+    public void setup() throws IOException {
+        wasm = Modules.wasm("export", Modules.TINYGO_WASIP1);
+        cache = Files.createTempDirectory("go4j-compilation-cache");
+        Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(cache)) {
+            files.sorted(Comparator.reverseOrder())
+                    .forEach(
+                            file -> {
+                                try {
+                                    Files.delete(file);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+        }
+    }
+
+    @Benchmark
+    public Go start() {
+        Go go;
+        switch (startup) {
+            case "cold-compile":
+                go =
+                        Go.builder(wasm)
+                                .withWasi()
+                                .withMachineFactory(MachineFactoryCompiler::compile)
+                                .build();
+                break;
+            case "cache-hit":
+                go = Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+                break;
+            default:
+                go = Machines.builder("export", startup).withWasi().build();
+                break;
+        }
+        go.run();
+        return go;
+    }
+}
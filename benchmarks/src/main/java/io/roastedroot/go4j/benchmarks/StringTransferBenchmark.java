@@ -0,0 +1,78 @@
+package io.roastedroot.go4j.benchmarks;
+
+import io.roastedroot.go4j.Go;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Java to guest (write) and guest to Java (read) string transfers, comparing the scratch buffer
+ * codec of {@link Go#writeGoString(int, String)} and {@link Go#readGoString} with the previous
+ * {@code getBytes}/{@code readBytes} based path. The guest memory is allocated once: a {@code
+ * wasm_malloc} call costs more than encoding a 1 MiB string and would hide the codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringTransferBenchmark {
+
+    @Param({"16", "1024", "1048576"})
+    private int size;
+
+    @Param({"ascii", "utf8"})
+    private String text;
+
+    private Go go;
+    private String value;
+    private int ptr;
+    private int len;
+
+    @Setup
+    public void setup() {
+        go = Go.builder(Modules.wasm("export", Modules.TINYGO_WASIP1)).withWasi().build();
+        go.run();
+
+        // 'e' with acute accent takes 2 bytes, so every size is reached exactly
+        var unit = text.equals("ascii") ? "ab" : "\u00e9";
+        value = unit.repeat(size / 2);
+
+        len = Go.goStringLength(value);
+        ptr = go.goMalloc(len);
+        go.writeGoString(ptr, value);
+    }
+
+    @Benchmark
+    public int legacyWrite() {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        go.memory().write(ptr, bytes);
+        return bytes.length;
+    }
+
+    @Benchmark
+    public int write() {
+        return go.writeGoString(ptr, value);
+    }
+
+    @Benchmark
+    public String legacyRead() {
+        return new String(go.memory().readBytes(ptr, len), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String read() {
+        return go.readGoString(ptr, len);
+    }
+}
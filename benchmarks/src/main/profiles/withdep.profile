@@ -0,0 +1,2 @@
+# go4j profile: functions never run
+interpretedFunctions=18,19,24,27,28,29,30,32,34,35,36,38,39,40,41,42,43,44,45,46,47,48,49,50,51,52,53,54,55,56,57,58,59,60,61,62,63,64,65,66,67,68,69,70,71,72,73,74,75,76,77,78,80,86,87,88,89,90,91,92,93,94,95,97,98,99,102,103,109,115,119,120,121,122,123,124,125,126,131,132,139,143,144,145,146,147,148,149,150,151,152,153,157,158,161,162,163,164,165,166,167,168,169,170,171,172,173,174,175,176,177,178,179,180,181,182,183,184,185,186,187,188,189,190,195,196,202,203,204,205,206,207,208,209,210,211,212,213,214,215,216,217,218,219,220,221,222,223,224,225,226,227,228,229,230,231,232,233,234,235,236,237,238,239,240,241,242,243,244,245,246,247,248,249,250,251,252,253,254,255,256,257,258,259,260,261,262,263,264,265,266,267,268,269,270,286,287,289,290,291,292,293,295,296,297,298,299,302,303,304,305,306,307,319,326,327,328,329,330,331,333,334,335,336,339,340,341,342,343,344,345,346,347,348,349,350,351,352,353,354,355,358,359,360,362,369,370,371,374,375,389,390,391,392,395,396
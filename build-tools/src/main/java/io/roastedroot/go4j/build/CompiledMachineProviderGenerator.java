@@ -0,0 +1,152 @@
+package io.roastedroot.go4j.build;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+/**
+ * Writes the {@code io.roastedroot.go4j.CompiledMachineProvider} of a machine compiled by {@code
+ * chicory-compiler-maven-plugin}, with the hash of its module, and registers it in {@code
+ * META-INF/services}. Meant to run in the build, after the plugin, e.g. with {@code
+ * exec-maven-plugin}:
+ *
+ * <pre>{@code
+ * java io.roastedroot.go4j.build.CompiledMachineProviderGenerator \
+ *     com.example.ExportModule export.wasm target/generated-sources/go4j \
+ *     target/generated-resources/go4j
+ * }</pre>
+ *
+ * writes {@code com.example.ExportModuleProvider}, creating its machines with {@code
+ * ExportModule.create(Instance)}.
+ */
+public final class CompiledMachineProviderGenerator {
+    private static final String PROVIDER = "io.roastedroot.go4j.CompiledMachineProvider";
+    private static final String SERVICE = "META-INF/services/" + PROVIDER;
+
+    // magic number and version
+    private static final int PREAMBLE_LENGTH = 8;
+    private static final byte CUSTOM_SECTION_ID = 0;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private CompiledMachineProviderGenerator() {}
+
+    /** Arguments: machine class name, module file, source folder, resource folder. */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            throw new IllegalArgumentException(
+                    "Usage: CompiledMachineProviderGenerator <machine class> <wasm file>"
+                            + " <source folder> <resource folder>");
+        }
+        generate(args[0], Path.of(args[1]), Path.of(args[2]), Path.of(args[3]));
+    }
+
+    /**
+     * Writes the provider of {@code machineClass}, compiled from {@code wasmFile}, to {@code
+     * sourceFolder} and adds it to the services registered in {@code resourceFolder}.
+     */
+    public static void generate(
+            String machineClass, Path wasmFile, Path sourceFolder, Path resourceFolder) {
+        try {
+            var hash = moduleHash(Files.readAllBytes(wasmFile));
+            var dot = machineClass.lastIndexOf('.');
+            var packageName = (dot < 0) ? "" : machineClass.substring(0, dot);
+            var simpleName = machineClass.substring(dot + 1);
+            var providerClass = machineClass + "Provider";
+
+            var source = sourceFolder.resolve(providerClass.replace('.', '/') + ".java");
+            Files.createDirectories(source.getParent());
+            Files.writeString(source, providerSource(packageName, simpleName, hash));
+
+            var service = resourceFolder.resolve(SERVICE);
+            Files.createDirectories(service.getParent());
+            var providers =
+                    Files.exists(service)
+                            ? new ArrayList<>(Files.readAllLines(service, StandardCharsets.UTF_8))
+                            : new ArrayList<String>();
+            if (!providers.contains(providerClass)) {
+                providers.add(providerClass);
+                Files.write(service, providers, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Failed to generate the compiled machine provider of " + machineClass, e);
+        }
+    }
+
+    private static String providerSource(String packageName, String simpleName, String hash) {
+        var source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.dylibso.chicory.runtime.Instance;\n")
+                .append("import com.dylibso.chicory.runtime.Machine;\n");
+        if (!packageName.equals(PROVIDER.substring(0, PROVIDER.lastIndexOf('.')))) {
+            source.append("import ").append(PROVIDER).append(";\n");
+        }
+        source.append("\n")
+                .append("/** Generated by go4j, runs its module on {@link ")
+                .append(simpleName)
+                .append("}. */\n")
+                .append("public final class ")
+                .append(simpleName)
+                .append("Provider implements CompiledMachineProvider {\n\n")
+                .append("    @Override\n")
+                .append("    public String moduleHash() {\n")
+                .append("        return \"")
+                .append(hash)
+                .append("\";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Machine create(Instance instance) {\n")
+                .append("        return ")
+                .append(simpleName)
+                .append(".create(instance);\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Same as {@code CompiledMachineProvider.moduleHash(byte[])}, which the runtime matches it
+     * against: SHA-256 of the module without its custom sections, hex encoded.
+     */
+    static String moduleHash(byte[] wasm) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        var start = Math.min(PREAMBLE_LENGTH, wasm.length);
+        digest.update(wasm, 0, start);
+        while (start < wasm.length) {
+            // id, LEB128 size, content
+            var pos = start + 1;
+            long size = 0;
+            for (int shift = 0; pos < wasm.length && shift < 35; shift += 7) {
+                var b = wasm[pos++];
+                size |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            var end = (int) Math.min(wasm.length, pos + size);
+            if (wasm[start] != CUSTOM_SECTION_ID) {
+                digest.update(wasm, start, end - start);
+            }
+            start = end;
+        }
+        var hash = digest.digest();
+        var result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(result);
+    }
+}
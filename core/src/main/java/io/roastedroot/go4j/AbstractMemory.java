@@ -0,0 +1,284 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.ChicoryInterruptedException;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.runtime.WasmRuntimeException;
+import com.dylibso.chicory.wasm.ChicoryException;
+import com.dylibso.chicory.wasm.types.ActiveDataSegment;
+import com.dylibso.chicory.wasm.types.DataSegment;
+import com.dylibso.chicory.wasm.types.Instruction;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import com.dylibso.chicory.wasm.types.PassiveDataSegment;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Limits, data segments, waiters and the accessors derived from the primitive ones of go4j
+ * memories.
+ */
+abstract class AbstractMemory implements Memory {
+    // results of memory.atomic.wait
+    private static final int WOKEN = 0;
+    private static final int NOT_EQUAL = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final MemoryLimits limits;
+    private DataSegment[] dataSegments;
+    // monitors of the addresses used by atomic instructions, only for shared memories
+    private final ConcurrentMap<Integer, Waiters> monitors = new ConcurrentHashMap<>();
+
+    AbstractMemory(MemoryLimits limits) {
+        this.limits = limits;
+    }
+
+    static WasmRuntimeException outOfBounds(int addr, int len) {
+        return new WasmRuntimeException(
+                "out of bounds memory access: attempted to access address: "
+                        + addr
+                        + " with size: "
+                        + len);
+    }
+
+    @Override
+    public int initialPages() {
+        return limits.initialPages();
+    }
+
+    @Override
+    public int maximumPages() {
+        return Math.min(limits.maximumPages(), RUNTIME_MAX_PAGES);
+    }
+
+    @Override
+    public void initialize(Instance instance, DataSegment[] dataSegments) {
+        this.dataSegments = dataSegments;
+        if (dataSegments == null) {
+            return;
+        }
+        for (var segment : dataSegments) {
+            if (segment instanceof ActiveDataSegment) {
+                var active = (ActiveDataSegment) segment;
+                var offset = (int) evaluate(instance, active.offsetInstructions());
+                write(offset, active.data());
+            } else if (!(segment instanceof PassiveDataSegment)) {
+                throw new IllegalStateException("Unknown data segment type: " + segment.getClass());
+            }
+        }
+    }
+
+    // constant expression of a data segment offset: constants, imported globals and the extended
+    // constant arithmetic
+    private static long evaluate(Instance instance, List<Instruction> instructions) {
+        var stack = new long[instructions.size()];
+        int top = 0;
+        for (var instruction : instructions) {
+            switch (instruction.opcode()) {
+                case I32_CONST:
+                case I64_CONST:
+                    stack[top++] = instruction.operand(0);
+                    break;
+                case GLOBAL_GET:
+                    stack[top++] = instance.global((int) instruction.operand(0)).getValue();
+                    break;
+                case I32_ADD:
+                    top--;
+                    stack[top - 1] = (int) stack[top - 1] + (int) stack[top];
+                    break;
+                case I32_SUB:
+                    top--;
+                    stack[top - 1] = (int) stack[top - 1] - (int) stack[top];
+                    break;
+                case I32_MUL:
+                    top--;
+                    stack[top - 1] = (int) stack[top - 1] * (int) stack[top];
+                    break;
+                case I64_ADD:
+                    top--;
+                    stack[top - 1] = stack[top - 1] + stack[top];
+                    break;
+                case I64_SUB:
+                    top--;
+                    stack[top - 1] = stack[top - 1] - stack[top];
+                    break;
+                case I64_MUL:
+                    top--;
+                    stack[top - 1] = stack[top - 1] * stack[top];
+                    break;
+                case END:
+                    break;
+                default:
+                    throw new ChicoryException(
+                            "Unsupported instruction in data segment offset: "
+                                    + instruction.opcode());
+            }
+        }
+        if (top != 1) {
+            throw new ChicoryException("Invalid data segment offset: " + instructions);
+        }
+        return stack[0];
+    }
+
+    @Override
+    public void initPassiveSegment(int segmentId, int dest, int offset, int size) {
+        var data = dataSegments[segmentId].data();
+        if (offset < 0 || size < 0 || offset > data.length - size) {
+            throw outOfBounds(dest, size);
+        }
+        write(dest, data, offset, size);
+    }
+
+    @Override
+    public void drop(int segment) {
+        dataSegments[segment] = PassiveDataSegment.EMPTY;
+    }
+
+    @Override
+    public long readU16(int addr) {
+        return readShort(addr) & 0xFFFFL;
+    }
+
+    @Override
+    public void writeF32(int addr, float data) {
+        writeI32(addr, Float.floatToRawIntBits(data));
+    }
+
+    @Override
+    public long readF32(int addr) {
+        return readInt(addr);
+    }
+
+    @Override
+    public float readFloat(int addr) {
+        return Float.intBitsToFloat(readInt(addr));
+    }
+
+    @Override
+    public void writeF64(int addr, double data) {
+        writeLong(addr, Double.doubleToRawLongBits(data));
+    }
+
+    @Override
+    public double readDouble(int addr) {
+        return Double.longBitsToDouble(readLong(addr));
+    }
+
+    @Override
+    public long readF64(int addr) {
+        return readLong(addr);
+    }
+
+    @Override
+    public void zero() {
+        fill((byte) 0, 0, Memory.bytes(pages()));
+    }
+
+    @Override
+    public boolean shared() {
+        return limits.shared();
+    }
+
+    @Override
+    public Object lock(int addr) {
+        if (!shared()) {
+            // nothing else can access the memory
+            return new Object();
+        }
+        return monitor(addr);
+    }
+
+    // monitors are kept once created: only the few addresses guests wait on get one
+    private Waiters monitor(int addr) {
+        return monitors.computeIfAbsent(addr, k -> new Waiters());
+    }
+
+    @Override
+    public int waitOn(int addr, int expected, long timeout) {
+        var waiters = waitersOf(addr);
+        synchronized (waiters) {
+            if (readInt(addr) != expected) {
+                return NOT_EQUAL;
+            }
+            return waiters.await(timeout);
+        }
+    }
+
+    @Override
+    public int waitOn(int addr, long expected, long timeout) {
+        var waiters = waitersOf(addr);
+        synchronized (waiters) {
+            if (readLong(addr) != expected) {
+                return NOT_EQUAL;
+            }
+            return waiters.await(timeout);
+        }
+    }
+
+    private Waiters waitersOf(int addr) {
+        if (!shared()) {
+            throw new ChicoryException("Attempt to wait on a non-shared memory, not supported.");
+        }
+        return monitor(addr);
+    }
+
+    @Override
+    public int notify(int addr, int count) {
+        if (!shared()) {
+            return 0;
+        }
+        var waiters = monitors.get(addr);
+        if (waiters == null) {
+            return 0;
+        }
+        synchronized (waiters) {
+            return waiters.wake(count);
+        }
+    }
+
+    /** Threads waiting on an address, guarded by the instance itself. */
+    private static final class Waiters {
+        private int waiting;
+        // woken waiters that haven't returned yet
+        private int wakeups;
+
+        // timeout in nanoseconds, negative to wait forever
+        int await(long timeout) {
+            long deadline = System.nanoTime() + timeout;
+            waiting++;
+            try {
+                while (wakeups == 0) {
+                    if (timeout < 0) {
+                        wait();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return TIMED_OUT;
+                        }
+                        wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                    }
+                }
+                wakeups--;
+                return WOKEN;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChicoryInterruptedException("Thread interrupted");
+            } finally {
+                waiting--;
+            }
+        }
+
+        // count is unsigned in wasm, negative values wake every waiter
+        int wake(int count) {
+            int woken = waiting - wakeups;
+            if (count >= 0 && count < woken) {
+                woken = count;
+            }
+            if (woken > 0) {
+                wakeups += woken;
+                notifyAll();
+            }
+            return woken;
+        }
+    }
+}
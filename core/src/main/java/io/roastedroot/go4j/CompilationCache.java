@@ -0,0 +1,288 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.build.time.compiler.Config;
+import com.dylibso.chicory.build.time.compiler.Generator;
+import com.dylibso.chicory.compiler.InterpreterFallback;
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Classes generated by the Chicory compiler for a module, stored on disk so that the next JVM
+ * loads them instead of compiling the module again. Entries are keyed by the hash of the module
+ * and the Chicory version, an entry that can't be read, belongs to another module or version, or
+ * has a class that doesn't load is compiled again and overwritten.
+ *
+ * <p>The classes come from the Chicory build-time compiler ({@code
+ * com.dylibso.chicory:build-time-compiler}), the public API writing the generated classes out.
+ */
+final class CompilationCache {
+    private static final int MAGIC = 0x47344a43; // "G4JC"
+    private static final int VERSION = 2;
+    // every entry has its own class loader, the names don't need to differ
+    private static final String CLASS_NAME = "io.roastedroot.go4j.cache.CompiledModule";
+
+    private CompilationCache() {}
+
+    /** Compiler of {@link Go.Builder#withCompilationCache(Path)}, it compiles at most once. */
+    static Function<Instance, Machine> compiler(
+            byte[] wasm, byte[] moduleHash, Path dir, Set<Integer> interpretedFunctions) {
+        return new Function<>() {
+            private Function<Instance, Machine> factory;
+
+            @Override
+            public synchronized Machine apply(Instance instance) {
+                if (factory == null) {
+                    factory = machineFactory(wasm, moduleHash, dir, interpretedFunctions);
+                }
+                return factory.apply(instance);
+            }
+        };
+    }
+
+    static Function<Instance, Machine> machineFactory(
+            byte[] wasm, byte[] moduleHash, Path dir, Set<Integer> interpretedFunctions) {
+        // entries compiled with other interpreted functions are different entries
+        var version =
+                interpretedFunctions.isEmpty()
+                        ? chicoryVersion()
+                        : chicoryVersion() + " interpreted " + new TreeSet<>(interpretedFunctions);
+        var file = dir.resolve(key(moduleHash, version) + ".g4jc");
+        var cached = load(file, moduleHash, version);
+        if (cached != null) {
+            return cached;
+        }
+        var classes = compile(wasm, interpretedFunctions);
+        write(file, moduleHash, version, classes);
+        try {
+            return machineFactory(classes);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Cannot load the compiled machine", e);
+        }
+    }
+
+    // the classes generated for the module, by name
+    private static Map<String, byte[]> compile(byte[] wasm, Set<Integer> interpretedFunctions) {
+        Path work = null;
+        try {
+            work = Files.createTempDirectory("go4j-compile");
+            var wasmFile = Files.write(work.resolve("module.wasm"), wasm);
+            var classes = work.resolve("classes");
+            var config =
+                    Config.builder()
+                            .withWasmFile(wasmFile)
+                            .withName(CLASS_NAME)
+                            .withTargetClassFolder(classes)
+                            .withTargetSourceFolder(work.resolve("sources"))
+                            .withTargetWasmFolder(work.resolve("wasm"))
+                            .withInterpreterFallback(InterpreterFallback.WARN)
+                            .withInterpretedFunctions(interpretedFunctions)
+                            .build();
+            new Generator(config).generateResources();
+            try (var files = Files.walk(classes)) {
+                return files.filter(f -> f.toString().endsWith(".class"))
+                        .collect(
+                                Collectors.toMap(
+                                        f -> className(classes, f), CompilationCache::readBytes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compile the module", e);
+        } catch (NoClassDefFoundError e) {
+            throw new IllegalStateException(
+                    "The compilation cache requires com.dylibso.chicory:build-time-compiler"
+                            + " on the class path",
+                    e);
+        } finally {
+            if (work != null) {
+                delete(work);
+            }
+        }
+    }
+
+    private static String className(Path root, Path file) {
+        var name = root.relativize(file).toString();
+        return name.substring(0, name.length() - ".class".length())
+                .replace(file.getFileSystem().getSeparator(), ".");
+    }
+
+    private static byte[] readBytes(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    /**
+     * Version of the Chicory compiler, or the location of its jar when the manifest doesn't carry
+     * one: Maven layouts have the version in the file name.
+     */
+    static String chicoryVersion() {
+        var version = MachineFactoryCompiler.class.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        var source = MachineFactoryCompiler.class.getProtectionDomain().getCodeSource();
+        return (source != null) ? String.valueOf(source.getLocation()) : "unknown";
+    }
+
+    private static String key(byte[] moduleHash, String version) {
+        var versionBytes = version.getBytes(StandardCharsets.UTF_8);
+        var data = Arrays.copyOf(moduleHash, moduleHash.length + versionBytes.length);
+        System.arraycopy(versionBytes, 0, data, moduleHash.length, versionBytes.length);
+        return ModuleHash.hex(ModuleHash.sha256(data));
+    }
+
+    // null when the entry is missing, stale or unusable
+    private static Function<Instance, Machine> load(Path file, byte[] moduleHash, String version) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var in =
+                new DataInputStream(
+                        new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            var hash = new byte[ModuleHash.LENGTH];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, moduleHash) || !in.readUTF().equals(version)) {
+                return null;
+            }
+            var count = in.readInt();
+            var classes = new HashMap<String, byte[]>();
+            for (int i = 0; i < count; i++) {
+                var name = in.readUTF();
+                var bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            return machineFactory(classes);
+        } catch (IOException | ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Loads, links and verifies every class up front, so that a broken entry is detected here
+    // rather than while running the module.
+    private static Function<Instance, Machine> machineFactory(Map<String, byte[]> classes)
+            throws ReflectiveOperationException {
+        var loader = new CachedClassLoader(classes);
+        for (var name : classes.keySet()) {
+            Class.forName(name, true, loader);
+        }
+        Constructor<? extends Machine> constructor =
+                loader.loadClass(CLASS_NAME + "Machine")
+                        .asSubclass(Machine.class)
+                        .getConstructor(Instance.class);
+        return instance -> newMachine(constructor, instance);
+    }
+
+    private static Machine newMachine(Constructor<? extends Machine> constructor, Instance inst) {
+        try {
+            return constructor.newInstance(inst);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot create the cached machine", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the cached machine", e);
+        }
+    }
+
+    private static void write(
+            Path file, byte[] moduleHash, String version, Map<String, byte[]> classes) {
+        var target = file.toAbsolutePath();
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (var out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(
+                                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(moduleHash);
+                out.writeUTF(version);
+                out.writeInt(classes.size());
+                for (var entry : classes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            try {
+                Files.move(
+                        tmp,
+                        target,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write compilation cache " + file, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    /** Defines the cached classes, everything else comes from the loader of Chicory. */
+    private static final class CachedClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        CachedClassLoader(Map<String, byte[]> classes) {
+            super(MachineFactoryCompiler.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            var bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+
+/**
+ * Machine compiled ahead of time for one module, e.g. by {@code chicory-compiler-maven-plugin},
+ * picked up by {@link Go#builder(byte[])} and {@link GoPool#builder(byte[])} when the hash of the
+ * module matches. Implementations are registered in {@code
+ * META-INF/services/io.roastedroot.go4j.CompiledMachineProvider}; {@code
+ * io.roastedroot.go4j.build.CompiledMachineProviderGenerator}, in {@code go4j-build-tools}, writes
+ * both at build time, next to the compiled machine.
+ */
+public interface CompiledMachineProvider {
+
+    /** Hex encoded {@link #moduleHash(byte[])} of the module the machine is compiled from. */
+    String moduleHash();
+
+    Machine create(Instance instance);
+
+    /**
+     * SHA-256 of the module bytes, hex encoded. Custom sections, like names and debug information,
+     * are left out: stripping them doesn't change the hash.
+     */
+    static String moduleHash(byte[] wasm) {
+        return ModuleHash.hex(ModuleHash.sha256WithoutCustomSections(wasm));
+    }
+}
@@ -0,0 +1,50 @@
+package io.roastedroot.go4j;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the {@link CompiledMachineProvider}s found on the class path, by module hash. Looked
+ * up once; providers that fail to load are skipped, their modules run on the interpreter. Modules
+ * are only hashed when a provider is registered.
+ */
+final class CompiledMachines {
+
+    private CompiledMachines() {}
+
+    private static final class Holder {
+        static final Map<String, CompiledMachineProvider> PROVIDERS = load();
+    }
+
+    static CompiledMachineProvider lookup(byte[] wasm) {
+        if (Holder.PROVIDERS.isEmpty()) {
+            return null;
+        }
+        return Holder.PROVIDERS.get(CompiledMachineProvider.moduleHash(wasm));
+    }
+
+    private static Map<String, CompiledMachineProvider> load() {
+        var result = new HashMap<String, CompiledMachineProvider>();
+        var providers =
+                ServiceLoader.load(
+                                CompiledMachineProvider.class,
+                                CompiledMachineProvider.class.getClassLoader())
+                        .iterator();
+        try {
+            while (providers.hasNext()) {
+                try {
+                    var provider = providers.next();
+                    result.putIfAbsent(provider.moduleHash().toLowerCase(Locale.ROOT), provider);
+                } catch (ServiceConfigurationError e) {
+                    // skip the broken provider
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            // unreadable configuration, keep the providers found so far
+        }
+        return Map.copyOf(result);
+    }
+}
@@ -0,0 +1,215 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Guest memory backed by an off-heap, direct {@link ByteBuffer}.
+ *
+ * <p>Besides keeping large heaps out of the Java heap, it lets NIO channels read and write guest
+ * memory in place through {@link #slice(int, int)}, and copies byte ranges in bulk:
+ *
+ * <pre>{@code
+ * var go = Go.builder(module).withMemoryFactory(DirectMemory::new).build();
+ * }</pre>
+ */
+public final class DirectMemory extends AbstractMemory {
+    // allocated off-heap buffer, at least twice the pages of its last growth: direct buffers are
+    // released by the garbage collector only, allocating one per memory.grow of a few pages
+    // stalls on reclaiming the previous ones
+    private ByteBuffer reserved;
+    // view of the first pages of reserved
+    private ByteBuffer buffer;
+    private int pages;
+
+    public DirectMemory(MemoryLimits limits) {
+        super(limits);
+        this.pages = limits.initialPages();
+        this.reserved = allocate(Memory.bytes(pages));
+        this.buffer = reserved;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void checkBounds(int addr, int len) {
+        if (addr < 0 || len < 0 || addr > buffer.capacity() - len) {
+            throw outOfBounds(addr, len);
+        }
+    }
+
+    /**
+     * Little-endian view of {@code len} bytes at {@code addr}, e.g. to read from or write to a
+     * channel without going through the heap. The view is invalidated when the memory grows.
+     */
+    public ByteBuffer slice(int addr, int len) {
+        checkBounds(addr, len);
+        return buffer.duplicate()
+                .position(addr)
+                .limit(addr + len)
+                .slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** Copies the remaining bytes of {@code src} to {@code addr}. */
+    public void write(int addr, ByteBuffer src) {
+        checkBounds(addr, src.remaining());
+        buffer.duplicate().position(addr).put(src);
+    }
+
+    /** Fills the remaining bytes of {@code dst} with the content at {@code addr}. */
+    public void read(int addr, ByteBuffer dst) {
+        var len = dst.remaining();
+        checkBounds(addr, len);
+        dst.put(buffer.duplicate().position(addr).limit(addr + len));
+    }
+
+    @Override
+    public int pages() {
+        return pages;
+    }
+
+    @Override
+    public int grow(int size) {
+        var previous = pages;
+        var target = previous + size;
+        if (size < 0 || target > maximumPages() || target < previous) {
+            return -1;
+        }
+        if (size > 0) {
+            if (Memory.bytes(target) > reserved.capacity()) {
+                var reservedPages = Math.min(maximumPages(), Math.max(target, 2 * pages));
+                var grown = allocate(Memory.bytes(reservedPages));
+                grown.put(buffer.duplicate().clear());
+                reserved = grown;
+            }
+            // pages past the previous view were never written, they are still zeroed
+            buffer =
+                    reserved.duplicate()
+                            .clear()
+                            .limit(Memory.bytes(target))
+                            .slice()
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            pages = target;
+        }
+        return previous;
+    }
+
+    @Override
+    public void write(int addr, byte[] data, int offset, int size) {
+        checkBounds(addr, size);
+        buffer.duplicate().position(addr).put(data, offset, size);
+    }
+
+    @Override
+    public byte read(int addr) {
+        try {
+            return buffer.get(addr);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Byte.BYTES);
+        }
+    }
+
+    @Override
+    public byte[] readBytes(int addr, int len) {
+        checkBounds(addr, len);
+        var result = new byte[len];
+        buffer.duplicate().position(addr).get(result);
+        return result;
+    }
+
+    @Override
+    public void writeI32(int addr, int data) {
+        try {
+            buffer.putInt(addr, data);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Integer.BYTES);
+        }
+    }
+
+    @Override
+    public int readInt(int addr) {
+        try {
+            return buffer.getInt(addr);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Integer.BYTES);
+        }
+    }
+
+    @Override
+    public void writeLong(int addr, long data) {
+        try {
+            buffer.putLong(addr, data);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Long.BYTES);
+        }
+    }
+
+    @Override
+    public long readLong(int addr) {
+        try {
+            return buffer.getLong(addr);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Long.BYTES);
+        }
+    }
+
+    @Override
+    public void writeShort(int addr, short data) {
+        try {
+            buffer.putShort(addr, data);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Short.BYTES);
+        }
+    }
+
+    @Override
+    public short readShort(int addr) {
+        try {
+            return buffer.getShort(addr);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Short.BYTES);
+        }
+    }
+
+    @Override
+    public void writeByte(int addr, byte data) {
+        try {
+            buffer.put(addr, data);
+        } catch (IndexOutOfBoundsException e) {
+            throw outOfBounds(addr, Byte.BYTES);
+        }
+    }
+
+    @Override
+    public void fill(byte value, int fromIndex, int toIndex) {
+        checkBounds(fromIndex, toIndex - fromIndex);
+        var chunk = new byte[Math.min(toIndex - fromIndex, Memory.PAGE_SIZE)];
+        if (value != 0) {
+            Arrays.fill(chunk, value);
+        }
+        var view = buffer.duplicate().position(fromIndex).limit(toIndex);
+        while (view.hasRemaining()) {
+            view.put(chunk, 0, Math.min(chunk.length, view.remaining()));
+        }
+    }
+
+    @Override
+    public void copy(int dest, int src, int size) {
+        checkBounds(src, size);
+        checkBounds(dest, size);
+        var from = buffer.duplicate().position(src).limit(src + size);
+        if (dest + size <= src || src + size <= dest) {
+            buffer.duplicate().position(dest).put(from);
+        } else {
+            // overlapping ranges: go through a copy
+            var tmp = new byte[size];
+            from.get(tmp);
+            buffer.duplicate().position(dest).put(tmp);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.ExecutionListener;
+import com.dylibso.chicory.runtime.MStack;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.Instruction;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Records the functions run by the interpreter: a function has run once the first instruction of
+ * its body has been executed. Only called by the thread running the guest.
+ */
+final class FunctionProfiler implements ExecutionListener {
+    // first instruction of each body, the interpreter executes these very objects
+    private final Map<Instruction, Integer> entries = new IdentityHashMap<>();
+    private final BitSet executed = new BitSet();
+    private final int imported;
+    private final int defined;
+
+    FunctionProfiler(WasmModule module) {
+        this.imported = module.importSection().count(ExternalType.FUNCTION);
+        var code = module.codeSection();
+        this.defined = code.functionBodyCount();
+        for (int i = 0; i < defined; i++) {
+            var instructions = code.getFunctionBody(i).instructions();
+            if (!instructions.isEmpty()) {
+                entries.put(instructions.get(0), imported + i);
+            }
+        }
+    }
+
+    @Override
+    public void onExecution(Instruction instruction, MStack stack) {
+        var function = entries.get(instruction);
+        if (function != null) {
+            executed.set(function);
+        }
+    }
+
+    GoProfile snapshot() {
+        return new GoProfile(imported, defined, (BitSet) executed.clone());
+    }
+}
@@ -1,64 +1,163 @@
 package io.roastedroot.go4j;
 
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
 import com.dylibso.chicory.runtime.ByteArrayMemory;
-import com.dylibso.chicory.runtime.ExportFunction;
 import com.dylibso.chicory.runtime.HostFunction;
 import com.dylibso.chicory.runtime.ImportFunction;
 import com.dylibso.chicory.runtime.ImportValues;
 import com.dylibso.chicory.runtime.Instance;
 import com.dylibso.chicory.runtime.InterpreterMachine;
 import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.runtime.Memory;
 import com.dylibso.chicory.wasi.WasiExitException;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasi.WasiPreview1;
+import com.dylibso.chicory.wasm.Parser;
 import com.dylibso.chicory.wasm.WasmModule;
 import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
 import com.dylibso.chicory.wasm.types.ValType;
 import com.dylibso.chicory.wasm.types.Value;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public final class Go {
+    public static final int DEFAULT_TRANSFER_ARENA_SIZE = 64 * 1024;
+
     private final Instance instance;
-    private final RefStore refs = new RefStore();
-
-    private final ExportFunction mallocFn;
-
-    private Go(
-            WasmModule module,
-            Function<Instance, Machine> machineFactory,
-            ImportFunction[] wasi,
-            Function<Go, ImportFunction[]> additionalImports,
-            boolean defaultImports) {
-        this.instance =
-                Instance.builder(module)
+    private final RefStore refs;
+
+    // refs registered by the owning thread while a ref scope is open
+    private Thread scopeOwner;
+    private int scopeDepth;
+    private int[] scopedRefs = new int[16];
+    private int scopedCount;
+    // refs registered through internJavaObj, by object; their owners are counted by the RefStore,
+    // guarded by the map itself as the RefStore can be shared across threads
+    private final Map<Object, Integer> interned = new IdentityHashMap<>();
+
+    // exported functions by name, resolved into handles on first use
+    private final Map<String, Integer> functionExports;
+    private final Map<String, GoFunction> functions = new HashMap<>();
+    private final GoFunction mallocFn;
+    // wasm_malloc_nozero when available: transferred buffers are overwritten right away
+    private final GoFunction transferMallocFn;
+    private final GoFunction freeFn;
+    // regions of views to give back to the guest, see GoBytesView
+    private final Queue<Integer> pendingFrees = new ConcurrentLinkedQueue<>();
+
+    private final byte[] transferScratch = new byte[Utf8.SCRATCH_SIZE];
+    private final Utf8 utf8 = new Utf8(transferScratch);
+
+    // nesting of guest calls, the transfer arena is recycled when it drops back to 0
+    private int callDepth;
+    // arguments allocated outside of the arena, freed when the outermost call returns
+    private int[] argFrees = new int[4];
+    private int argFreeCount;
+    // refs freed when the outermost call returns, see freeAfterCall
+    private int[] callRefs = new int[4];
+    private int callRefCount;
+    private final int transferArenaSize;
+    private boolean arenaUnavailable;
+    private int arenaBase;
+    private int arenaTop;
+
+    private final byte[] moduleHash;
+    private final Path snapshot;
+    // writes the snapshot, once for all of its instances
+    private final GoModule template;
+    // exit code recorded in the snapshot, when the instance has been restored from it
+    private final OptionalInt restored;
+
+    // typed bindings (e.g. generated invokables) attached to this instance
+    private final Map<Class<?>, Object> bindings = new HashMap<>();
+
+    // runs submitted calls, one at a time
+    private final Executor executor;
+    private final ReentrantLock submitLock = new ReentrantLock();
+    private final TieredMachine tiered;
+    private final FunctionProfiler profiler;
+    // null when the instance doesn't record metrics
+    private final GoMetrics metrics;
+
+    Go(GoModule template) {
+        this.refs = new RefStore(template.refShrinkThreshold);
+        this.executor = template.executor;
+        this.transferArenaSize = template.transferArenaSize;
+        this.moduleHash = template.moduleHash;
+        this.snapshot = template.snapshot;
+        this.template = template;
+        this.functionExports = template.functionExports;
+        this.metrics = template.metrics;
+        this.profiler = (template.profiling) ? new FunctionProfiler(template.module) : null;
+        var instanceBuilder =
+                Instance.builder(template.module)
                         .withImportValues(
                                 ImportValues.builder()
-                                        .addFunction(wasi)
-                                        .addFunction(additionalImports.apply(this))
+                                        .addFunction(template.wasi.get())
+                                        .addFunction(timed(template.additionalImports.apply(this)))
                                         .addFunction(
-                                                (defaultImports)
-                                                        ? defaultImports(this)
+                                                (template.defaultImports)
+                                                        ? timed(defaultImports(this))
                                                         : new ImportFunction[0])
                                         .build())
-                        .withMachineFactory(machineFactory)
-                        .withMemoryFactory(ByteArrayMemory::new)
-                        .withStart(false)
-                        .build();
-        ExportFunction mallocFn = null;
-        for (int i = 0; i < instance.module().exportSection().exportCount(); i++) {
-            var export = instance.module().exportSection().getExport(i);
-            if (export.name().equals("wasm_malloc")) {
-                mallocFn = instance.exports().function("wasm_malloc");
-                break;
-            }
+                        .withMachineFactory(template.machineFactory)
+                        .withMemoryFactory(template.memoryFactory)
+                        .withStart(false);
+        if (profiler != null) {
+            instanceBuilder.withUnsafeExecutionListener(profiler);
+        }
+        this.instance = instanceBuilder.build();
+        this.mallocFn = hasFunction("wasm_malloc") ? function("wasm_malloc") : null;
+        this.freeFn = hasFunction("wasm_free") ? function("wasm_free") : null;
+        this.transferMallocFn =
+                hasFunction("wasm_malloc_nozero") ? function("wasm_malloc_nozero") : mallocFn;
+        this.restored =
+                (snapshot != null)
+                        ? Snapshot.restore(instance, moduleHash, snapshot)
+                        : OptionalInt.empty();
+        var machine = instance.getMachine();
+        this.tiered = (machine instanceof TieredMachine) ? (TieredMachine) machine : null;
+        if (tiered != null) {
+            tiered.startCompilation(executor);
         }
-        this.mallocFn = mallocFn;
     }
 
+    /**
+     * Without its bytes, the module can't be matched with a {@link CompiledMachineProvider}: use
+     * {@link #builder(byte[])} to pick up a machine compiled at build time.
+     */
     public static Builder builder(WasmModule module) {
-        return new Builder(module);
+        return new Builder(module, null, null);
+    }
+
+    /**
+     * Parses {@code wasm} and keeps its hash, required by {@link Builder#withSnapshot(Path)}. The
+     * module runs on the {@link CompiledMachineProvider} registered for it, if any, unless the
+     * builder configures a machine.
+     */
+    public static Builder builder(byte[] wasm) {
+        return new Builder(Parser.parse(wasm), wasm, ModuleHash.sha256(wasm));
+    }
+
+    static Builder builder(WasmModule module, byte[] wasm, byte[] moduleHash) {
+        return new Builder(module, wasm, moduleHash);
     }
 
     public Object getJavaObj(int ref) {
@@ -66,65 +165,700 @@ public final class Go {
     }
 
     public int allocJavaObj(Object v) {
-        return refs.registerRef(v);
+        return track(refs.registerRef(v));
     }
 
     public void setJavaObj(int ref, Object v) {
-        refs.set(ref, v);
+        if (refs.isInterned(ref)) {
+            reintern(ref, v);
+        } else {
+            refs.set(ref, v);
+        }
+    }
+
+    /**
+     * Registers {@code v}, or reuses its ref when it has already been interned. Every call adds an
+     * owner that must {@link #freeJavaObj(int) free} the ref, which is released with the last one.
+     * Interned refs are managed by their owners: ref scopes don't track them, and the generated
+     * glue doesn't intern.
+     */
+    public int internJavaObj(Object v) {
+        synchronized (interned) {
+            var ref = interned.get(v);
+            if (ref != null) {
+                refs.retain(ref);
+                return ref;
+            }
+            ref = refs.registerInterned(v);
+            interned.put(v, ref);
+            return ref;
+        }
+    }
+
+    // the ref keeps its owners, and is found by v unless v is already interned
+    private void reintern(int ref, Object v) {
+        synchronized (interned) {
+            interned.remove(refs.get(ref), ref);
+            refs.setInterned(ref, v);
+            interned.putIfAbsent(v, ref);
+        }
+    }
+
+    public int allocJavaInt(int v) {
+        return track(refs.registerInt(v));
     }
 
+    public int allocJavaLong(long v) {
+        return track(refs.registerLong(v));
+    }
+
+    public int allocJavaFloat(float v) {
+        return track(refs.registerFloat(v));
+    }
+
+    public int allocJavaDouble(double v) {
+        return track(refs.registerDouble(v));
+    }
+
+    public int allocJavaBool(boolean v) {
+        return track(refs.registerBool(v));
+    }
+
+    public int getJavaInt(int ref) {
+        return refs.getInt(ref);
+    }
+
+    public long getJavaLong(int ref) {
+        return refs.getLong(ref);
+    }
+
+    public float getJavaFloat(int ref) {
+        return refs.getFloat(ref);
+    }
+
+    public double getJavaDouble(int ref) {
+        return refs.getDouble(ref);
+    }
+
+    public boolean getJavaBool(int ref) {
+        return refs.getBool(ref);
+    }
+
+    public void setJavaInt(int ref, int v) {
+        refs.setInt(ref, v);
+    }
+
+    public void setJavaLong(int ref, long v) {
+        refs.setLong(ref, v);
+    }
+
+    public void setJavaFloat(int ref, float v) {
+        refs.setFloat(ref, v);
+    }
+
+    public void setJavaDouble(int ref, double v) {
+        refs.setDouble(ref, v);
+    }
+
+    public void setJavaBool(int ref, boolean v) {
+        refs.setBool(ref, v);
+    }
+
+    /** Frees {@code ref}, or drops one of its owners when it has been interned. */
     public void freeJavaObj(int ref) {
+        if (!refs.isInterned(ref)) {
+            refs.free(ref);
+            return;
+        }
+        synchronized (interned) {
+            var v = refs.get(ref);
+            if (refs.disown(ref)) {
+                interned.remove(v, ref);
+            }
+        }
+    }
+
+    /** Reads and frees {@code ref}: the object is handed over to the Java side. */
+    public Object takeJavaObj(int ref) {
+        var v = refs.get(ref);
+        freeJavaObj(ref);
+        return v;
+    }
+
+    public int takeJavaInt(int ref) {
+        var v = refs.getInt(ref);
         refs.free(ref);
+        return v;
+    }
+
+    public long takeJavaLong(int ref) {
+        var v = refs.getLong(ref);
+        refs.free(ref);
+        return v;
+    }
+
+    public float takeJavaFloat(int ref) {
+        var v = refs.getFloat(ref);
+        refs.free(ref);
+        return v;
+    }
+
+    public double takeJavaDouble(int ref) {
+        var v = refs.getDouble(ref);
+        refs.free(ref);
+        return v;
+    }
+
+    public boolean takeJavaBool(int ref) {
+        var v = refs.getBool(ref);
+        refs.free(ref);
+        return v;
+    }
+
+    /**
+     * Frees {@code ref} when the outermost guest call returns, for refs lent to the guest for the
+     * duration of the call.
+     */
+    public int freeAfterCall(int ref) {
+        if (callRefCount == callRefs.length) {
+            callRefs = Arrays.copyOf(callRefs, callRefs.length * 2);
+        }
+        callRefs[callRefCount++] = ref;
+        return ref;
+    }
+
+    /**
+     * Runs {@code body} in a ref scope: every ref registered on this thread while it runs,
+     * including the ones created by the guest through {@code allocJava}, by generated builtins
+     * and by generated invokables, is released when it returns, unless it has been passed to
+     * {@link #promoteRef(int)} or {@link #internJavaObj(Object) interned}. Scopes can be nested;
+     * refs already freed are skipped.
+     */
+    public <T> T withRefScope(Supplier<T> body) {
+        var current = Thread.currentThread();
+        if (scopeDepth > 0 && scopeOwner != current) {
+            throw new IllegalStateException("Ref scope already open on thread " + scopeOwner);
+        }
+        scopeOwner = current;
+        scopeDepth++;
+        int mark = scopedCount;
+        try {
+            return body.get();
+        } finally {
+            for (int i = scopedCount - 1; i >= mark; i--) {
+                if (scopedRefs[i] != 0) {
+                    refs.release(scopedRefs[i]);
+                }
+            }
+            scopedCount = mark;
+            scopeDepth--;
+            if (scopeDepth == 0) {
+                scopeOwner = null;
+            }
+        }
+    }
+
+    public void withRefScope(Runnable body) {
+        withRefScope(
+                () -> {
+                    body.run();
+                    return null;
+                });
+    }
+
+    /** Keeps {@code ref} alive past the end of the enclosing ref scopes. */
+    public int promoteRef(int ref) {
+        for (int i = scopedCount - 1; i >= 0; i--) {
+            if (scopedRefs[i] == ref) {
+                scopedRefs[i] = 0;
+                break;
+            }
+        }
+        return ref;
+    }
+
+    private int track(int ref) {
+        if (scopeDepth > 0 && scopeOwner == Thread.currentThread()) {
+            if (scopedCount == scopedRefs.length) {
+                scopedRefs = Arrays.copyOf(scopedRefs, scopedCount << 1);
+            }
+            scopedRefs[scopedCount++] = ref;
+        }
+        return ref;
+    }
+
+    public RefStore refStore() {
+        return refs;
+    }
+
+    /**
+     * Returns the binding of {@code type} attached to this instance, creating it with {@code
+     * factory} on first use. Used to reuse generated invokables across leases of a {@link GoPool}.
+     */
+    public <T> T binding(Class<T> type, Function<Go, ? extends T> factory) {
+        var binding = bindings.get(type);
+        if (binding == null) {
+            binding = factory.apply(this);
+            bindings.put(type, binding);
+        }
+        return type.cast(binding);
     }
 
     public int goMalloc(int len) {
-        return (int) mallocFn.apply(new long[] {len})[0];
+        return (int) mallocFn.call(len)[0];
     }
 
-    // returns exitCode
-    public int run() {
-        ExportFunction startFun = null;
-        ExportFunction initializeFun = null;
-        for (int i = 0; i < instance.module().exportSection().exportCount(); i++) {
-            var export = instance.module().exportSection().getExport(i);
-            switch (export.name()) {
-                case "_start":
-                    startFun = instance.exports().function("_start");
-                    break;
-                case "_initialize":
-                    initializeFun = instance.exports().function("_initialize");
-                    break;
+    /**
+     * Allocates guest memory for a value handed to the guest. While a guest call is in progress,
+     * the memory is bump-allocated from the transfer arena, without calling into the guest, and
+     * is valid until the outermost call returns; {@code wasm_free} ignores arena pointers. Outside
+     * of guest calls, or when the arena is full or not supported by the module, it falls back to
+     * {@code wasm_malloc_nozero} (or {@code wasm_malloc}). In both cases the content of the
+     * returned memory is undefined.
+     */
+    public int transferMalloc(int len) {
+        if (callDepth > 0) {
+            var ptr = arenaMalloc(len);
+            if (ptr != 0) {
+                return ptr;
+            }
+        }
+        return (int) transferMallocFn.call(len)[0];
+    }
+
+    // 0 when the arena is full or not available
+    private int arenaMalloc(int len) {
+        if (len > 0 && arenaReady()) {
+            var start = (arenaTop + 7) & ~7;
+            if (start <= transferArenaSize - len) {
+                arenaTop = start + len;
+                return arenaBase + start;
+            }
+        }
+        return 0;
+    }
+
+    // memory for an argument of the next call, released when the outermost call returns
+    private int argMalloc(int len) {
+        if (len == 0) {
+            return 0;
+        }
+        var ptr = arenaMalloc(len);
+        if (ptr != 0) {
+            return ptr;
+        }
+        // returning to depth 0 would release the arguments written so far
+        callDepth++;
+        try {
+            ptr = (int) transferMallocFn.call(len)[0];
+        } finally {
+            callDepth--;
+        }
+        if (argFreeCount == argFrees.length) {
+            argFrees = Arrays.copyOf(argFrees, argFrees.length * 2);
+        }
+        argFrees[argFreeCount++] = ptr;
+        return ptr;
+    }
+
+    private static long pack(int ptr, int len) {
+        return (((long) ptr) << 32) | (len & 0xffffffffL);
+    }
+
+    /**
+     * Writes {@code str} as UTF-8 for the next guest call, which receives it as {@code ptr << 32
+     * | len} (see {@code go4j.ArgString}). The memory is released when that call returns.
+     */
+    public long argString(String str) {
+        return writeString(str, true);
+    }
+
+    /** Same as {@link #argString(String)} for {@code bytes} (see {@code go4j.ArgBytes}). */
+    public long argBytes(byte[] bytes) {
+        var ptr = argMalloc(bytes.length);
+        if (bytes.length > 0) {
+            instance.memory().write(ptr, bytes);
+        }
+        return pack(ptr, bytes.length);
+    }
+
+    /**
+     * Same as {@link #argString(String)} for the remaining bytes of {@code bytes}, whose position
+     * is left untouched.
+     */
+    public long argBytes(ByteBuffer bytes) {
+        var len = bytes.remaining();
+        var ptr = argMalloc(len);
+        var memory = instance.memory();
+        if (memory instanceof DirectMemory) {
+            ((DirectMemory) memory).write(ptr, bytes.duplicate());
+        } else if (bytes.hasArray()) {
+            memory.write(ptr, bytes.array(), bytes.arrayOffset() + bytes.position(), len);
+        } else {
+            var source = bytes.duplicate();
+            var offset = 0;
+            while (source.hasRemaining()) {
+                var n = Math.min(transferScratch.length, source.remaining());
+                source.get(transferScratch, 0, n);
+                memory.write(ptr + offset, transferScratch, 0, n);
+                offset += n;
             }
         }
+        return pack(ptr, len);
+    }
+
+    /**
+     * Reads the string returned by the guest as {@code ptr << 32 | len} (see {@code
+     * go4j.ReturnString}) and gives the memory back to the guest.
+     */
+    public String takeGoString(long packed) {
+        var ptr = (int) (packed >>> 32);
+        var len = (int) packed;
+        if (len == 0) {
+            return "";
+        }
+        try {
+            return readGoString(ptr, len);
+        } finally {
+            freeFn.call(ptr);
+        }
+    }
+
+    /** Same as {@link #takeGoString(long)} for bytes (see {@code go4j.ReturnBytes}). */
+    public byte[] takeGoBytes(long packed) {
+        var ptr = (int) (packed >>> 32);
+        var len = (int) packed;
+        if (len == 0) {
+            return new byte[0];
+        }
+        try {
+            return instance.memory().readBytes(ptr, len);
+        } finally {
+            freeFn.call(ptr);
+        }
+    }
+
+    /** Same as {@link #takeGoBytes(long)}, wrapped in a heap {@code ByteBuffer}. */
+    public ByteBuffer takeGoByteBuffer(long packed) {
+        return ByteBuffer.wrap(takeGoBytes(packed));
+    }
+
+    private boolean arenaReady() {
+        if (arenaBase != 0) {
+            return true;
+        }
+        if (arenaUnavailable) {
+            return false;
+        }
+        if (transferArenaSize > 0 && hasFunction("wasm_reserve_arena")) {
+            arenaBase = (int) function("wasm_reserve_arena").call(transferArenaSize)[0];
+        }
+        arenaUnavailable = (arenaBase == 0);
+        return !arenaUnavailable;
+    }
+
+    void enterCall() {
+        callDepth++;
+        if (callDepth == 1) {
+            if (!pendingFrees.isEmpty()) {
+                drainPendingFrees();
+            }
+            if (tiered != null) {
+                tiered.safePoint();
+            }
+        }
+    }
+
+    void exitCall() {
+        callDepth--;
+        if (callDepth == 0) {
+            arenaTop = 0;
+            if (argFreeCount > 0) {
+                freeArgs();
+            }
+            if (callRefCount > 0) {
+                freeCallRefs();
+            }
+        }
+    }
+
+    private void freeCallRefs() {
+        var count = callRefCount;
+        callRefCount = 0;
+        for (int i = 0; i < count; i++) {
+            freeJavaObj(callRefs[i]);
+        }
+    }
+
+    private void freeArgs() {
+        var count = argFreeCount;
+        argFreeCount = 0;
+        for (int i = 0; i < count; i++) {
+            freeFn.call(argFrees[i]);
+        }
+    }
+
+    public Memory memory() {
+        return instance.memory();
+    }
+
+    /**
+     * Read-only view over {@code len} bytes at {@code ptr}, without copying them. The region must
+     * be owned by the caller (e.g. allocated with {@link #goMalloc(int)}, or pinned by {@code
+     * SetBuilder.BytesView}): releasing the view frees it with {@code wasm_free}.
+     */
+    public GoBytesView view(int ptr, int len) {
+        if (freeFn == null) {
+            throw new IllegalStateException("Views need a module exporting wasm_free");
+        }
+        if (ptr < 0 || len < 0 || (long) ptr + len > Memory.bytes(instance.memory().pages())) {
+            throw new IllegalArgumentException(
+                    "Region " + ptr + "+" + len + " is outside of guest memory");
+        }
+        return new GoBytesView(this, ptr, len, pendingFrees);
+    }
+
+    // frees the regions of released or collected views
+    void drainPendingFrees() {
+        var ptr = pendingFrees.poll();
+        while (ptr != null) {
+            freeFn.call(ptr);
+            ptr = pendingFrees.poll();
+        }
+    }
 
-        if (startFun != null) {
+    /** The machine of the instance, when built {@link Builder#withTieredCompilation()}. */
+    public Optional<TieredMachine> tieredMachine() {
+        return Optional.ofNullable(tiered);
+    }
+
+    /**
+     * Functions run so far, when built {@link Builder#withProfiling()}. Not to be called while a
+     * guest call is running on another thread.
+     */
+    public Optional<GoProfile> profile() {
+        return (profiler != null) ? Optional.of(profiler.snapshot()) : Optional.empty();
+    }
+
+    /** Current size of the guest memory in 64 KiB pages. */
+    public int memoryPages() {
+        return instance.memory().pages();
+    }
+
+    /**
+     * Copies {@code str} as UTF-8 into guest memory allocated with {@link #transferMalloc(int)};
+     * returns {@code ptr << 32 | len}. Strings longer than 8192 chars are encoded without an
+     * intermediate {@code byte[]}.
+     */
+    public long writeGoString(String str) {
+        return writeString(str, false);
+    }
+
+    /**
+     * Copies {@code str} as UTF-8 to {@code ptr}, into guest memory owned by the caller, which
+     * must hold {@link #goStringLength(String)} bytes; returns that length.
+     */
+    public int writeGoString(int ptr, String str) {
+        var memory = instance.memory();
+        if (str.length() <= Utf8.SCRATCH_SIZE) {
+            var bytes = str.getBytes(StandardCharsets.UTF_8);
+            memory.write(ptr, bytes);
+            return bytes.length;
+        }
+        var measure = Utf8.measure(str);
+        utf8.write(memory, ptr, str, measure);
+        return (int) measure;
+    }
+
+    /** Number of bytes {@link #writeGoString(int, String)} writes for {@code str}. */
+    public static int goStringLength(String str) {
+        return Utf8.encodedLength(str);
+    }
+
+    // str in memory from argMalloc (arg) or transferMalloc, as ptr << 32 | len
+    private long writeString(String str, boolean arg) {
+        var memory = instance.memory();
+        if (str.length() <= Utf8.SCRATCH_SIZE) {
+            // faster than going through the scratch buffer, and the array is small
+            var bytes = str.getBytes(StandardCharsets.UTF_8);
+            var ptr = arg ? argMalloc(bytes.length) : transferMalloc(bytes.length);
+            memory.write(ptr, bytes);
+            return pack(ptr, bytes.length);
+        }
+        var measure = Utf8.measure(str);
+        var len = (int) measure;
+        var ptr = arg ? argMalloc(len) : transferMalloc(len);
+        utf8.write(memory, ptr, str, measure);
+        return pack(ptr, len);
+    }
+
+    public String readGoString(int ptr, int len) {
+        // Keeps the intermediate byte[] on purpose. Memory can't read into a caller's array, so
+        // decoding through the scratch buffer means reading word by word, and new String(byte[])
+        // is an intrinsic that a hand-written decoder doesn't match. StringTransferBenchmark
+        // (read vs legacyRead) measured the scratch decoder 2x slower for 1 KiB of ASCII (377 vs
+        // 186 ns) and no faster for UTF-8: measure there before replacing this
+        return new String(instance.memory().readBytes(ptr, len), StandardCharsets.UTF_8);
+    }
+
+    public boolean hasFunction(String name) {
+        return functionExports.containsKey(name);
+    }
+
+    /** Returns the handle to the exported function {@code name}, resolved on first use. */
+    public GoFunction function(String name) {
+        var function = functions.get(name);
+        if (function == null) {
+            if (!hasFunction(name)) {
+                throw new IllegalArgumentException("Function " + name + " is not exported");
+            }
+            function =
+                    new GoFunction(
+                            this,
+                            name,
+                            instance.exports().function(name),
+                            (metrics != null) ? metrics.guestFunction(name) : null);
+            functions.put(name, function);
+        }
+        return function;
+    }
+
+    // returns exitCode
+    public int run() {
+        var startFun = hasFunction("_start") ? function("_start") : null;
+        var initializeFun = hasFunction("_initialize") ? function("_initialize") : null;
+
+        if (restored.isPresent()) {
+            // memory and globals already hold the initialized state
+            return restored.getAsInt();
+        } else if (startFun != null) {
             // Run program, but catch the wasmExit exception that's thrown
             // to return back here.
             try {
-                startFun.apply();
+                startFun.call();
             } catch (WasiExitException wasiExit) {
+                writeSnapshot(wasiExit.exitCode());
                 return wasiExit.exitCode();
             }
             throw new RuntimeException("unreachable");
         } else {
-            initializeFun.apply();
+            initializeFun.call();
+            writeSnapshot(0);
             return 0;
         }
     }
 
+    private void writeSnapshot(int exitCode) {
+        if (snapshot == null) {
+            return;
+        }
+        if (refs.liveCount() > 0) {
+            throw new IllegalStateException(
+                    "Cannot snapshot "
+                            + snapshot
+                            + ": "
+                            + refs.liveCount()
+                            + " host refs are alive after initialization");
+        }
+        template.writeSnapshot(instance, exitCode);
+    }
+
+    /**
+     * Runs {@code call} on the executor of this instance, after the calls submitted before it
+     * have completed: calls submitted from any number of threads never run concurrently. Used by
+     * the {@code CompletableFuture} methods of generated invokables; calls made directly on the
+     * instance are not serialized with submitted ones.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    submitLock.lock();
+                    try {
+                        return call.get();
+                    } finally {
+                        submitLock.unlock();
+                    }
+                },
+                executor);
+    }
+
     // low level API: need to have a better typed one on top
     public long[] exec(String export, long[] args) {
-        return instance.exports().function(export).apply(args);
+        return function(export).apply(args);
+    }
+
+    private static final GoMetrics.Counter NO_COUNTER = value -> {};
+
+    GoMetrics.Counter transferCounter(String function) {
+        return (metrics != null) ? metrics.transferredBytes(function) : NO_COUNTER;
+    }
+
+    // wraps the host functions to time their calls, when recording metrics
+    private ImportFunction[] timed(ImportFunction[] functions) {
+        if (metrics == null) {
+            return functions;
+        }
+        var result = new ImportFunction[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            result[i] = functions[i];
+            if (functions[i] instanceof HostFunction) {
+                var function = (HostFunction) functions[i];
+                var handle = function.handle();
+                var timer = metrics.hostFunction(function.module(), function.name());
+                result[i] =
+                        new HostFunction(
+                                function.module(),
+                                function.name(),
+                                function.functionType(),
+                                (inst, args) -> {
+                                    var start = System.nanoTime();
+                                    try {
+                                        return handle.apply(inst, args);
+                                    } finally {
+                                        timer.record(System.nanoTime() - start);
+                                    }
+                                });
+            }
+        }
+        return result;
     }
 
-    private static ImportFunction[] defaultImports(Go goInstance) {
+    // built per instance, each function returns its result through its own buffer: the machine
+    // copies results out before running any other code of the instance
+    static ImportFunction[] defaultImports(Go goInstance) {
+        var allocJavaResult = new long[1];
+        var asGoStringResult = new long[1];
+        var asGoBytesResult = new long[1];
+        var asGoIntsResult = new long[1];
+        var asGoLongsResult = new long[1];
+        var asGoFloatsResult = new long[1];
+        var asGoDoublesResult = new long[1];
+        var asGoUint32Result = new long[1];
+        var asGoUint64Result = new long[1];
+        var asGoFloat32Result = new long[1];
+        var asGoFloat64Result = new long[1];
+        var asGoBoolResult = new long[1];
+        // bytes copied by each import, no-ops without metrics
+        var asGoStringCopied = goInstance.transferCounter("asGoString");
+        var asGoBytesCopied = goInstance.transferCounter("asGoBytes");
+        var asGoIntsCopied = goInstance.transferCounter("asGoInts");
+        var asGoLongsCopied = goInstance.transferCounter("asGoLongs");
+        var asGoFloatsCopied = goInstance.transferCounter("asGoFloats");
+        var asGoDoublesCopied = goInstance.transferCounter("asGoDoubles");
+        var setJavaStringCopied = goInstance.transferCounter("setJavaString");
+        var setJavaBytesCopied = goInstance.transferCounter("setJavaBytes");
+        var setJavaIntsCopied = goInstance.transferCounter("setJavaInts");
+        var setJavaLongsCopied = goInstance.transferCounter("setJavaLongs");
+        var setJavaFloatsCopied = goInstance.transferCounter("setJavaFloats");
+        var setJavaDoublesCopied = goInstance.transferCounter("setJavaDoubles");
         return new ImportFunction[] {
             new HostFunction(
                     "env",
                     "allocJava",
                     FunctionType.of(List.of(), List.of(ValType.I32)),
                     (inst, args) -> {
-                        return new long[] {goInstance.allocJavaObj(null)};
+                        allocJavaResult[0] = goInstance.allocJavaObj(null);
+                        return allocJavaResult;
                     }),
             new HostFunction(
                     "env",
@@ -133,13 +867,10 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var str = (String) goInstance.getJavaObj(ref);
-                        var strBytes = str.getBytes(StandardCharsets.UTF_8);
-
-                        var ptr = goInstance.goMalloc(strBytes.length);
-                        inst.memory().write(ptr, strBytes);
-
-                        var resPtr = (((long) ptr) << 32) | (strBytes.length & 0xffffffffL);
-                        return new long[] {resPtr};
+                        var packed = goInstance.writeGoString(str);
+                        asGoStringCopied.add((int) packed);
+                        asGoStringResult[0] = packed;
+                        return asGoStringResult;
                     }),
             new HostFunction(
                     "env",
@@ -149,11 +880,85 @@ public final class Go {
                         var ref = (int) args[0];
                         var bytes = (byte[]) goInstance.getJavaObj(ref);
 
-                        var ptr = goInstance.goMalloc(bytes.length);
+                        var ptr = goInstance.transferMalloc(bytes.length);
                         inst.memory().write(ptr, bytes);
+                        asGoBytesCopied.add(bytes.length);
 
                         var resPtr = (((long) ptr) << 32) | (bytes.length & 0xffffffffL);
-                        return new long[] {resPtr};
+                        asGoBytesResult[0] = resPtr;
+                        return asGoBytesResult;
+                    }),
+            new HostFunction(
+                    "env",
+                    "asGoInts",
+                    FunctionType.of(List.of(ValType.I32), List.of(ValType.I64)),
+                    (inst, args) -> {
+                        var ref = (int) args[0];
+                        var values = (int[]) goInstance.getJavaObj(ref);
+
+                        var size = PrimitiveArrays.byteSize(values.length, Integer.BYTES);
+                        var ptr = goInstance.transferMalloc(size);
+                        PrimitiveArrays.write(
+                                inst.memory(), ptr, values, goInstance.transferScratch);
+                        asGoIntsCopied.add(size);
+
+                        var resPtr = (((long) ptr) << 32) | (values.length & 0xffffffffL);
+                        asGoIntsResult[0] = resPtr;
+                        return asGoIntsResult;
+                    }),
+            new HostFunction(
+                    "env",
+                    "asGoLongs",
+                    FunctionType.of(List.of(ValType.I32), List.of(ValType.I64)),
+                    (inst, args) -> {
+                        var ref = (int) args[0];
+                        var values = (long[]) goInstance.getJavaObj(ref);
+
+                        var size = PrimitiveArrays.byteSize(values.length, Long.BYTES);
+                        var ptr = goInstance.transferMalloc(size);
+                        PrimitiveArrays.write(
+                                inst.memory(), ptr, values, goInstance.transferScratch);
+                        asGoLongsCopied.add(size);
+
+                        var resPtr = (((long) ptr) << 32) | (values.length & 0xffffffffL);
+                        asGoLongsResult[0] = resPtr;
+                        return asGoLongsResult;
+                    }),
+            new HostFunction(
+                    "env",
+                    "asGoFloats",
+                    FunctionType.of(List.of(ValType.I32), List.of(ValType.I64)),
+                    (inst, args) -> {
+                        var ref = (int) args[0];
+                        var values = (float[]) goInstance.getJavaObj(ref);
+
+                        var size = PrimitiveArrays.byteSize(values.length, Float.BYTES);
+                        var ptr = goInstance.transferMalloc(size);
+                        PrimitiveArrays.write(
+                                inst.memory(), ptr, values, goInstance.transferScratch);
+                        asGoFloatsCopied.add(size);
+
+                        var resPtr = (((long) ptr) << 32) | (values.length & 0xffffffffL);
+                        asGoFloatsResult[0] = resPtr;
+                        return asGoFloatsResult;
+                    }),
+            new HostFunction(
+                    "env",
+                    "asGoDoubles",
+                    FunctionType.of(List.of(ValType.I32), List.of(ValType.I64)),
+                    (inst, args) -> {
+                        var ref = (int) args[0];
+                        var values = (double[]) goInstance.getJavaObj(ref);
+
+                        var size = PrimitiveArrays.byteSize(values.length, Double.BYTES);
+                        var ptr = goInstance.transferMalloc(size);
+                        PrimitiveArrays.write(
+                                inst.memory(), ptr, values, goInstance.transferScratch);
+                        asGoDoublesCopied.add(size);
+
+                        var resPtr = (((long) ptr) << 32) | (values.length & 0xffffffffL);
+                        asGoDoublesResult[0] = resPtr;
+                        return asGoDoublesResult;
                     }),
             new HostFunction(
                     "env",
@@ -161,7 +966,8 @@ public final class Go {
                     FunctionType.of(List.of(ValType.I32), List.of(ValType.I32)),
                     (inst, args) -> {
                         var ref = (int) args[0];
-                        return new long[] {(int) goInstance.getJavaObj(ref)};
+                        asGoUint32Result[0] = goInstance.getJavaInt(ref);
+                        return asGoUint32Result;
                     }),
             new HostFunction(
                     "env",
@@ -169,7 +975,8 @@ public final class Go {
                     FunctionType.of(List.of(ValType.I32), List.of(ValType.I64)),
                     (inst, args) -> {
                         var ref = (int) args[0];
-                        return new long[] {(long) goInstance.getJavaObj(ref)};
+                        asGoUint64Result[0] = goInstance.getJavaLong(ref);
+                        return asGoUint64Result;
                     }),
             new HostFunction(
                     "env",
@@ -177,7 +984,8 @@ public final class Go {
                     FunctionType.of(List.of(ValType.I32), List.of(ValType.F32)),
                     (inst, args) -> {
                         var ref = (int) args[0];
-                        return new long[] {Value.floatToLong((float) goInstance.getJavaObj(ref))};
+                        asGoFloat32Result[0] = Value.floatToLong(goInstance.getJavaFloat(ref));
+                        return asGoFloat32Result;
                     }),
             new HostFunction(
                     "env",
@@ -185,7 +993,8 @@ public final class Go {
                     FunctionType.of(List.of(ValType.I32), List.of(ValType.F64)),
                     (inst, args) -> {
                         var ref = (int) args[0];
-                        return new long[] {Value.doubleToLong((double) goInstance.getJavaObj(ref))};
+                        asGoFloat64Result[0] = Value.doubleToLong(goInstance.getJavaDouble(ref));
+                        return asGoFloat64Result;
                     }),
             new HostFunction(
                     "env",
@@ -193,9 +1002,10 @@ public final class Go {
                     FunctionType.of(List.of(ValType.I32), List.of(ValType.I32)),
                     (inst, args) -> {
                         var ref = (int) args[0];
-                        var bool = (Boolean) goInstance.getJavaObj(ref);
+                        var bool = goInstance.getJavaBool(ref);
 
-                        return (bool) ? new long[] {1} : new long[] {0};
+                        asGoBoolResult[0] = (bool) ? 1 : 0;
+                        return asGoBoolResult;
                     }),
             new HostFunction(
                     "env",
@@ -206,12 +1016,8 @@ public final class Go {
                         int sPtr = (int) args[1];
                         int sLen = (int) args[2];
 
-                        var str =
-                                new String(
-                                        inst.memory().readBytes(sPtr, sLen),
-                                        StandardCharsets.UTF_8);
-
-                        goInstance.setJavaObj(ref, str);
+                        goInstance.setJavaObj(ref, goInstance.readGoString(sPtr, sLen));
+                        setJavaStringCopied.add(sLen);
                         return null;
                     }),
             new HostFunction(
@@ -226,6 +1032,75 @@ public final class Go {
                         var bytes = inst.memory().readBytes(sPtr, sLen);
 
                         goInstance.setJavaObj(ref, bytes);
+                        setJavaBytesCopied.add(sLen);
+                        return null;
+                    }),
+            new HostFunction(
+                    "env",
+                    "setJavaBytesView",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32, ValType.I32), List.of()),
+                    (inst, args) -> {
+                        int ref = (int) args[0];
+                        int sPtr = (int) args[1];
+                        int sLen = (int) args[2];
+
+                        goInstance.setJavaObj(ref, goInstance.view(sPtr, sLen));
+                        return null;
+                    }),
+            new HostFunction(
+                    "env",
+                    "setJavaInts",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32, ValType.I32), List.of()),
+                    (inst, args) -> {
+                        int ref = (int) args[0];
+                        int ptr = (int) args[1];
+                        int len = (int) args[2];
+
+                        goInstance.setJavaObj(
+                                ref, PrimitiveArrays.readInts(inst.memory(), ptr, len));
+                        setJavaIntsCopied.add((long) len * Integer.BYTES);
+                        return null;
+                    }),
+            new HostFunction(
+                    "env",
+                    "setJavaLongs",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32, ValType.I32), List.of()),
+                    (inst, args) -> {
+                        int ref = (int) args[0];
+                        int ptr = (int) args[1];
+                        int len = (int) args[2];
+
+                        goInstance.setJavaObj(
+                                ref, PrimitiveArrays.readLongs(inst.memory(), ptr, len));
+                        setJavaLongsCopied.add((long) len * Long.BYTES);
+                        return null;
+                    }),
+            new HostFunction(
+                    "env",
+                    "setJavaFloats",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32, ValType.I32), List.of()),
+                    (inst, args) -> {
+                        int ref = (int) args[0];
+                        int ptr = (int) args[1];
+                        int len = (int) args[2];
+
+                        goInstance.setJavaObj(
+                                ref, PrimitiveArrays.readFloats(inst.memory(), ptr, len));
+                        setJavaFloatsCopied.add((long) len * Float.BYTES);
+                        return null;
+                    }),
+            new HostFunction(
+                    "env",
+                    "setJavaDoubles",
+                    FunctionType.of(List.of(ValType.I32, ValType.I32, ValType.I32), List.of()),
+                    (inst, args) -> {
+                        int ref = (int) args[0];
+                        int ptr = (int) args[1];
+                        int len = (int) args[2];
+
+                        goInstance.setJavaObj(
+                                ref, PrimitiveArrays.readDoubles(inst.memory(), ptr, len));
+                        setJavaDoublesCopied.add((long) len * Double.BYTES);
                         return null;
                     }),
             new HostFunction(
@@ -235,7 +1110,7 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var v = (int) args[1];
-                        goInstance.setJavaObj(ref, v);
+                        goInstance.setJavaInt(ref, v);
                         return null;
                     }),
             new HostFunction(
@@ -245,7 +1120,7 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var v = args[1];
-                        goInstance.setJavaObj(ref, v);
+                        goInstance.setJavaLong(ref, v);
                         return null;
                     }),
             new HostFunction(
@@ -255,7 +1130,7 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var v = Value.longToFloat(args[1]);
-                        goInstance.setJavaObj(ref, v);
+                        goInstance.setJavaFloat(ref, v);
                         return null;
                     }),
             new HostFunction(
@@ -265,7 +1140,7 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var v = Value.longToDouble(args[1]);
-                        goInstance.setJavaObj(ref, v);
+                        goInstance.setJavaDouble(ref, v);
                         return null;
                     }),
             new HostFunction(
@@ -275,7 +1150,7 @@ public final class Go {
                     (inst, args) -> {
                         var ref = (int) args[0];
                         var bool = args[1] > 0;
-                        goInstance.setJavaObj(ref, bool);
+                        goInstance.setJavaBool(ref, bool);
                         return null;
                     }),
             new HostFunction(
@@ -293,24 +1168,50 @@ public final class Go {
     public static final class Builder {
         private final WasmModule module;
         private Function<Instance, Machine> machineFactory;
-        private ImportFunction[] wasi;
+        private Function<MemoryLimits, Memory> memoryFactory;
+        private int initialMemoryPages;
+        private Supplier<ImportFunction[]> wasi;
         private Function<Go, ImportFunction[]> additionalImports;
         private boolean defaultImports = true;
+        private boolean compiledMachineLookup = true;
+        private boolean profiling;
+        private GoMetrics metrics;
+        private Set<Integer> interpretedFunctions = Set.of();
+        private double refShrinkThreshold = RefStore.DEFAULT_SHRINK_THRESHOLD;
+        // the bytes of the module, when the builder has them
+        private final byte[] wasm;
+        private final byte[] moduleHash;
+        private Path snapshot;
+        private Path compilationCache;
+        private int transferArenaSize = DEFAULT_TRANSFER_ARENA_SIZE;
+        private Executor executor;
+        private boolean tieredCompilation;
+        private TieredMachine.Listener tieringListener;
 
-        private Builder(WasmModule module) {
+        private Builder(WasmModule module, byte[] wasm, byte[] moduleHash) {
             this.module = module;
+            this.wasm = wasm;
+            this.moduleHash = moduleHash;
         }
 
         public Builder withWasi() {
             return withWasi(WasiOptions.builder().inheritSystem().build());
         }
 
+        /** Every instance gets its own {@link WasiPreview1}, and so its own file descriptors. */
         public Builder withWasi(WasiOptions wasiOpts) {
-            return withWasi(WasiPreview1.builder().withOptions(wasiOpts).build());
+            this.wasi =
+                    () -> WasiPreview1.builder().withOptions(wasiOpts).build().toHostFunctions();
+            return this;
         }
 
+        /**
+         * Uses {@code wasi} for every instance built, the instances of a {@link GoModule} then
+         * share its file descriptors: prefer {@link #withWasi(WasiOptions)} for templates.
+         */
         public Builder withWasi(WasiPreview1 wasi) {
-            this.wasi = wasi.toHostFunctions();
+            var functions = wasi.toHostFunctions();
+            this.wasi = () -> functions;
             return this;
         }
 
@@ -319,29 +1220,235 @@ public final class Go {
             return this;
         }
 
+        /**
+         * Starts the instance on the interpreter and switches to the compiled machine once the
+         * module has been compiled in the background, on the executor of the instance. The
+         * compiled machine comes from {@link #withMachineFactory(Function)}, {@link
+         * MachineFactoryCompiler} by default. Not needed, and ignored, when a {@link
+         * CompiledMachineProvider} is registered for the module. See {@link TieredMachine}.
+         */
+        public Builder withTieredCompilation() {
+            return withTieredCompilation(null);
+        }
+
+        public Builder withTieredCompilation(TieredMachine.Listener listener) {
+            this.tieredCompilation = true;
+            this.tieringListener = listener;
+            return this;
+        }
+
+        /**
+         * Runs the instance on the interpreter and records the functions it runs, see {@link
+         * Go#profile()}. Meant for profiling runs: it slows down every instruction, and can't be
+         * combined with a machine factory, tiered compilation or a compilation cache.
+         */
+        public Builder withProfiling() {
+            this.profiling = true;
+            return this;
+        }
+
+        /**
+         * Experimental, none by default. Functions left to the interpreter when go4j compiles the
+         * module, i.e. with {@link #withTieredCompilation()} or {@link
+         * #withCompilationCache(Path)}, typically the {@link GoProfile#coldFunctions() cold
+         * functions} of a profile: fewer classes to generate and load, but Chicory still parses
+         * the interpreted bodies, so startup can get slower rather than faster. Measure before
+         * using it.
+         */
+        public Builder withInterpretedFunctions(Set<Integer> functions) {
+            this.interpretedFunctions = Set.copyOf(functions);
+            return this;
+        }
+
+        /**
+         * Records call counts and latencies of the exports and host functions, and the bytes
+         * copied by the default imports, in {@code metrics}, e.g. a {@link GoMetricsRegistry}.
+         * Nothing is recorded by default.
+         */
+        public Builder withMetrics(GoMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Memory implementation of the instance, {@link ByteArrayMemory} by default; see {@link
+         * DirectMemory} for an off-heap one, and {@link SegmentedMemory} for one that grows
+         * without copying.
+         */
+        public Builder withMemoryFactory(Function<MemoryLimits, Memory> memoryFactory) {
+            this.memoryFactory = memoryFactory;
+            return this;
+        }
+
+        /**
+         * Starts the instance with at least {@code pages} pages of memory (up to the module
+         * maximum), e.g. the steady-state size reported by {@link Go#memoryPages()}, to avoid
+         * growing it step by step under load.
+         */
+        public Builder withInitialMemoryPages(int pages) {
+            if (pages < 0) {
+                throw new IllegalArgumentException("Initial memory pages must be >= 0: " + pages);
+            }
+            this.initialMemoryPages = pages;
+            return this;
+        }
+
         public Builder withNoDefaultImports() {
             this.defaultImports = false;
             return this;
         }
 
+        /** Ignores the {@link CompiledMachineProvider}s registered for the module. */
+        public Builder withNoCompiledMachineLookup() {
+            this.compiledMachineLookup = false;
+            return this;
+        }
+
         public Builder withAdditionalImport(Function<Go, ImportFunction[]> importsFun) {
             additionalImports = importsFun;
             return this;
         }
 
+        public Builder withRefShrinkThreshold(double refShrinkThreshold) {
+            this.refShrinkThreshold = refShrinkThreshold;
+            return this;
+        }
+
+        /**
+         * Restores the instance from the memory image stored in {@code snapshot}, skipping {@code
+         * _initialize} (or {@code _start}) in {@link Go#run()}. When the file is missing, or
+         * belongs to a different module, {@code run()} initializes the instance and (re)writes it,
+         * once per {@link GoModule}: a {@link GoPool} initializes its first instance and the
+         * others restore it.
+         * Only state inside the instance is captured: host refs and host side effects of the
+         * initialization, like output written through WASI, are not.
+         */
+        public Builder withSnapshot(Path snapshot) {
+            if (moduleHash == null) {
+                throw new IllegalStateException(
+                        "Snapshots need the module hash,"
+                                + " create the builder with Go.builder(byte[])");
+            }
+            this.snapshot = snapshot;
+            return this;
+        }
+
+        /**
+         * Compiles the module with the Chicory build-time compiler, which must be on the class
+         * path, and keeps the generated classes in {@code dir}, keyed by the hash of the module
+         * and the Chicory version, so that later JVMs load them instead of compiling again.
+         * Entries that can't be loaded are compiled and written again. Combines with {@link
+         * #withTieredCompilation()}, not with {@link #withMachineFactory(Function)}.
+         */
+        public Builder withCompilationCache(Path dir) {
+            if (wasm == null) {
+                throw new IllegalStateException(
+                        "The compilation cache needs the module bytes,"
+                                + " create the builder with Go.builder(byte[])");
+            }
+            this.compilationCache = dir;
+            return this;
+        }
+
+        /**
+         * Size of the region reserved in guest memory for values passed to the guest during a
+         * call, {@code 0} disables it. Requires a module exporting {@code wasm_reserve_arena}.
+         */
+        public Builder withTransferArena(int bytes) {
+            if (bytes < 0) {
+                throw new IllegalArgumentException("Transfer arena size must be >= 0: " + bytes);
+            }
+            this.transferArenaSize = bytes;
+            return this;
+        }
+
+        /**
+         * Executor running the calls passed to {@link Go#submit(Supplier)}, by default virtual
+         * threads when available.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         public Go build() {
+            return buildModule().newInstance();
+        }
+
+        /**
+         * Resolves the configuration into a template sharing everything but the state of each
+         * instance, for applications creating many short lived instances of the same module.
+         */
+        public GoModule buildModule() {
             // defaults
-            if (machineFactory == null) {
-                machineFactory = inst -> new InterpreterMachine(inst);
+            if (profiling
+                    && (machineFactory != null || tieredCompilation || compilationCache != null)) {
+                throw new IllegalStateException(
+                        "Profiling runs on the interpreter, it can't be combined with a machine"
+                                + " factory, tiered compilation or a compilation cache");
+            }
+            var machines = machineFactory;
+            var compiled =
+                    (machines == null
+                                    && !profiling
+                                    && compilationCache == null
+                                    && compiledMachineLookup
+                                    && wasm != null)
+                            ? CompiledMachines.lookup(wasm)
+                            : null;
+            if (compilationCache != null) {
+                if (machineFactory != null) {
+                    throw new IllegalStateException(
+                            "A compilation cache can't be combined with a machine factory");
+                }
+                machines =
+                        CompilationCache.compiler(
+                                wasm, moduleHash, compilationCache, interpretedFunctions);
             }
-            if (wasi == null) {
-                wasi = new ImportFunction[0];
+            if (compiled != null) {
+                machines = compiled::create;
+            } else if (tieredCompilation) {
+                var compiler =
+                        (machines != null)
+                                ? machines
+                                : GoModule.compileOnce(module, interpretedFunctions);
+                var listener = tieringListener;
+                machines = inst -> new TieredMachine(inst, compiler, listener);
+            } else if (machines == null) {
+                machines = inst -> new InterpreterMachine(inst);
             }
-            if (additionalImports == null) {
-                additionalImports = goInst -> new ImportFunction[0];
+            Function<MemoryLimits, Memory> memory =
+                    (memoryFactory != null) ? memoryFactory : ByteArrayMemory::new;
+            var minPages = initialMemoryPages;
+            if (minPages > 0) {
+                var factory = memory;
+                memory =
+                        limits ->
+                                factory.apply(
+                                        (limits.initialPages() >= minPages)
+                                                ? limits
+                                                : new MemoryLimits(
+                                                        Math.min(minPages, limits.maximumPages()),
+                                                        limits.maximumPages(),
+                                                        limits.shared()));
             }
 
-            return new Go(module, machineFactory, wasi, additionalImports, defaultImports);
+            return new GoModule(
+                    module,
+                    machines,
+                    memory,
+                    (wasi != null) ? wasi : () -> new ImportFunction[0],
+                    (additionalImports != null)
+                            ? additionalImports
+                            : goInst -> new ImportFunction[0],
+                    defaultImports,
+                    refShrinkThreshold,
+                    moduleHash,
+                    snapshot,
+                    transferArenaSize,
+                    (executor != null) ? executor : GoExecutors.defaultExecutor(),
+                    profiling,
+                    metrics);
         }
     }
 }
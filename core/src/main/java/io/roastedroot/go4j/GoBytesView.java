@@ -0,0 +1,165 @@
+package io.roastedroot.go4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+
+/**
+ * Read-only view over {@code len} bytes of guest memory at {@code ptr}, handed to Java without
+ * copying them (see {@code SetBuilder.BytesView} on the Go side and {@link Go#view(int, int)}).
+ *
+ * <p>The region belongs to the guest until the view is released: {@link #release()} (or {@link
+ * #close()}) gives it back through {@code wasm_free}; views that become unreachable are released
+ * at the next call into the guest. The content is copied only by {@link #toByteArray()} and
+ * {@link #copyTo(byte[], int)}, and by {@link #asByteBuffer()} for memories other than {@link
+ * DirectMemory}, whose buffers are invalidated when the memory grows. Like the {@link Go}
+ * instance it belongs to, a view must only be used by one thread at a time.
+ */
+public final class GoBytesView implements AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Go go;
+    private final int ptr;
+    private final int length;
+    private final Cleaner.Cleanable cleanable;
+    private boolean released;
+
+    GoBytesView(Go go, int ptr, int length, Queue<Integer> pendingFrees) {
+        this.go = go;
+        this.ptr = ptr;
+        this.length = length;
+        this.cleanable = CLEANER.register(this, new PendingFree(pendingFrees, ptr));
+    }
+
+    // must not reference the view, or it never becomes unreachable
+    private static final class PendingFree implements Runnable {
+        private final Queue<Integer> pendingFrees;
+        private final int ptr;
+
+        PendingFree(Queue<Integer> pendingFrees, int ptr) {
+            this.pendingFrees = pendingFrees;
+            this.ptr = ptr;
+        }
+
+        @Override
+        public void run() {
+            pendingFrees.add(ptr);
+        }
+    }
+
+    public int ptr() {
+        return ptr;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte get(int index) {
+        checkReleased();
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds: " + length);
+        }
+        return go.memory().read(ptr + index);
+    }
+
+    /**
+     * Read-only buffer over the region: guest memory itself with {@link DirectMemory}, a copy with
+     * other memories.
+     */
+    public ByteBuffer asByteBuffer() {
+        checkReleased();
+        var memory = go.memory();
+        if (memory instanceof DirectMemory) {
+            return ((DirectMemory) memory).slice(ptr, length).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(memory.readBytes(ptr, length)).asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray() {
+        checkReleased();
+        return go.memory().readBytes(ptr, length);
+    }
+
+    /** Copies the region to {@code dst} starting at {@code offset}. */
+    public void copyTo(byte[] dst, int offset) {
+        checkReleased();
+        if (offset < 0 || offset > dst.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot copy " + length + " bytes at " + offset + " of " + dst.length);
+        }
+        read(0, dst, offset, length);
+    }
+
+    /** Writes the region to {@code out} through a bounded buffer. */
+    public void writeTo(OutputStream out) throws IOException {
+        checkReleased();
+        var chunk = new byte[Math.min(length, CHUNK_SIZE)];
+        var done = 0;
+        while (done < length) {
+            var n = Math.min(chunk.length, length - done);
+            read(done, chunk, 0, n);
+            out.write(chunk, 0, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Writes the region to {@code channel}, straight from guest memory with {@link DirectMemory}.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        checkReleased();
+        var memory = go.memory();
+        if (memory instanceof DirectMemory) {
+            var buffer = ((DirectMemory) memory).slice(ptr, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return;
+        }
+        var chunk = ByteBuffer.allocate(Math.min(length, CHUNK_SIZE));
+        var done = 0;
+        while (done < length) {
+            var n = Math.min(chunk.capacity(), length - done);
+            chunk.clear().limit(n);
+            read(done, chunk.array(), 0, n);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            done += n;
+        }
+    }
+
+    private void read(int from, byte[] dst, int offset, int len) {
+        var memory = go.memory();
+        if (memory instanceof DirectMemory) {
+            ((DirectMemory) memory).read(ptr + from, ByteBuffer.wrap(dst, offset, len));
+        } else {
+            System.arraycopy(memory.readBytes(ptr + from, len), 0, dst, offset, len);
+        }
+    }
+
+    /** Gives the region back to the guest; the view can't be read afterwards. */
+    public void release() {
+        if (!released) {
+            released = true;
+            cleanable.clean();
+            go.drainPendingFrees();
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException("View at " + ptr + " has been released");
+        }
+    }
+}
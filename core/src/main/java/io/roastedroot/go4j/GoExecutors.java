@@ -0,0 +1,55 @@
+package io.roastedroot.go4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default executor of {@link Go#submit} and {@link GoPool#submit}: a virtual thread per task when
+ * the JVM supports them (looked up reflectively, the library targets Java 11), otherwise a cached
+ * pool of daemon threads. Shared by every instance that doesn't configure its own.
+ *
+ * <p>Also holds the daemon thread running the timed housekeeping of pools.
+ */
+final class GoExecutors {
+
+    private GoExecutors() {}
+
+    private static final class Holder {
+        static final Executor DEFAULT = create();
+    }
+
+    private static final class SchedulerHolder {
+        static final ScheduledExecutorService SCHEDULER =
+                Executors.newSingleThreadScheduledExecutor(
+                        task -> {
+                            var thread = new Thread(task, "go4j-scheduler");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    static Executor defaultExecutor() {
+        return Holder.DEFAULT;
+    }
+
+    static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    private static Executor create() {
+        try {
+            return (Executor)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            var count = new AtomicInteger();
+            return Executors.newCachedThreadPool(
+                    task -> {
+                        var thread = new Thread(task, "go4j-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+}
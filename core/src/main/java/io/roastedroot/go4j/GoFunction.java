@@ -0,0 +1,87 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+
+/**
+ * Handle to an exported guest function, resolved once by {@link Go#function(String)}.
+ *
+ * <p>The fixed arity {@code call} variants reuse an argument buffer owned by the handle, so like
+ * the {@link Go} instance it belongs to, a handle must only be used by one thread at a time.
+ */
+public final class GoFunction {
+    private static final long[] NO_ARGS = new long[0];
+
+    private final Go go;
+    private final String name;
+    private final ExportFunction function;
+    // null without metrics
+    private final GoMetrics.Timer timer;
+
+    private final long[] args1 = new long[1];
+    private final long[] args2 = new long[2];
+    private final long[] args3 = new long[3];
+    private final long[] args4 = new long[4];
+
+    GoFunction(Go go, String name, ExportFunction function, GoMetrics.Timer timer) {
+        this.go = go;
+        this.name = name;
+        this.function = function;
+        this.timer = timer;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long[] call() {
+        return invoke(NO_ARGS);
+    }
+
+    public long[] call(long arg0) {
+        args1[0] = arg0;
+        return invoke(args1);
+    }
+
+    public long[] call(long arg0, long arg1) {
+        args2[0] = arg0;
+        args2[1] = arg1;
+        return invoke(args2);
+    }
+
+    public long[] call(long arg0, long arg1, long arg2) {
+        args3[0] = arg0;
+        args3[1] = arg1;
+        args3[2] = arg2;
+        return invoke(args3);
+    }
+
+    public long[] call(long arg0, long arg1, long arg2, long arg3) {
+        args4[0] = arg0;
+        args4[1] = arg1;
+        args4[2] = arg2;
+        args4[3] = arg3;
+        return invoke(args4);
+    }
+
+    /** Calls the function with {@code args} as they are, for arities without a fixed variant. */
+    public long[] apply(long[] args) {
+        return invoke(args);
+    }
+
+    private long[] invoke(long[] args) {
+        go.enterCall();
+        try {
+            if (timer == null) {
+                return function.apply(args);
+            }
+            var start = System.nanoTime();
+            try {
+                return function.apply(args);
+            } finally {
+                timer.record(System.nanoTime() - start);
+            }
+        } finally {
+            go.exitCall();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.roastedroot.go4j;
+
+/**
+ * Metrics SPI of {@link Go.Builder#withMetrics(GoMetrics)}: the recorders are resolved once per
+ * instance and function, then called on every call, so implementations should record without
+ * locking. Bridging to a metrics library takes a few lambdas:
+ *
+ * <pre>{@code
+ * var metrics = new GoMetrics() {
+ *     public Timer guestFunction(String name) {
+ *         var timer = registry.timer("go.guest", "function", name);
+ *         return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ *     ...
+ * };
+ * }</pre>
+ *
+ * {@link GoMetricsRegistry} keeps the values in memory. Without metrics nothing is recorded.
+ */
+public interface GoMetrics {
+
+    /** Recorder of the durations of a call. */
+    @FunctionalInterface
+    interface Timer {
+        void record(long nanos);
+    }
+
+    /** Recorder of a running total. */
+    @FunctionalInterface
+    interface Counter {
+        void add(long value);
+    }
+
+    /** Calls of the export {@code name}, through {@link Go#exec}, handles and invokables. */
+    Timer guestFunction(String name);
+
+    /** Calls of the host function {@code module.name}, default imports and builtins included. */
+    Timer hostFunction(String module, String name);
+
+    /**
+     * Bytes copied between Java and guest memory by the default import {@code function}, e.g.
+     * {@code asGoString} or {@code setJavaBytes}.
+     */
+    Counter transferredBytes(String function);
+}
@@ -0,0 +1,54 @@
+package io.roastedroot.go4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link GoMetrics}: a {@link LatencyHistogram} per function and a byte total per
+ * default import, shared by all the instances built with it.
+ *
+ * <pre>{@code
+ * var metrics = new GoMetricsRegistry();
+ * var go = Go.builder(module).withWasi().withMetrics(metrics).build();
+ * ...
+ * metrics.guestFunctions().get("update").percentileNanos(0.99);
+ * }</pre>
+ */
+public final class GoMetricsRegistry implements GoMetrics {
+    private final Map<String, LatencyHistogram> guestFunctions = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> hostFunctions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> transferredBytes = new ConcurrentHashMap<>();
+
+    @Override
+    public Timer guestFunction(String name) {
+        return guestFunctions.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    @Override
+    public Timer hostFunction(String module, String name) {
+        return hostFunctions.computeIfAbsent(module + "." + name, k -> new LatencyHistogram());
+    }
+
+    @Override
+    public Counter transferredBytes(String function) {
+        return transferredBytes.computeIfAbsent(function, k -> new LongAdder())::add;
+    }
+
+    /** Histograms by export name. */
+    public Map<String, LatencyHistogram> guestFunctions() {
+        return Collections.unmodifiableMap(guestFunctions);
+    }
+
+    /** Histograms by {@code module.name} of the host function. */
+    public Map<String, LatencyHistogram> hostFunctions() {
+        return Collections.unmodifiableMap(hostFunctions);
+    }
+
+    /** Bytes copied so far by a default import. */
+    public long totalTransferredBytes(String function) {
+        var total = transferredBytes.get(function);
+        return (total != null) ? total.sum() : 0;
+    }
+}
@@ -0,0 +1,135 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import com.dylibso.chicory.runtime.ImportFunction;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Template of {@link Go} instances, built once by {@link Go.Builder#buildModule()}: the
+ * parsed module, its export index and the machine factory are shared, so {@link #newInstance()}
+ * only creates the state of the instance (memory, globals, refs, WASI file descriptors and the
+ * host functions bound to it). Safe to use from several threads. The instances share the WASI
+ * options of the template, e.g. its standard streams.
+ *
+ * <pre>{@code
+ * var template = Go.builder(wasm).withWasi().buildModule();
+ * var go = template.newInstance();
+ * }</pre>
+ */
+public final class GoModule {
+    final WasmModule module;
+    final Function<Instance, Machine> machineFactory;
+    final Function<MemoryLimits, Memory> memoryFactory;
+    // WASI functions of a new instance
+    final Supplier<ImportFunction[]> wasi;
+    final Function<Go, ImportFunction[]> additionalImports;
+    final boolean defaultImports;
+    final double refShrinkThreshold;
+    final byte[] moduleHash;
+    final Path snapshot;
+    final int transferArenaSize;
+    final Executor executor;
+    final boolean profiling;
+    final GoMetrics metrics;
+    // exported functions by name, shared by the instances
+    final Map<String, Integer> functionExports;
+    // whether an instance has written the snapshot, guarded by this
+    private boolean snapshotWritten;
+
+    GoModule(
+            WasmModule module,
+            Function<Instance, Machine> machineFactory,
+            Function<MemoryLimits, Memory> memoryFactory,
+            Supplier<ImportFunction[]> wasi,
+            Function<Go, ImportFunction[]> additionalImports,
+            boolean defaultImports,
+            double refShrinkThreshold,
+            byte[] moduleHash,
+            Path snapshot,
+            int transferArenaSize,
+            Executor executor,
+            boolean profiling,
+            GoMetrics metrics) {
+        this.module = module;
+        this.machineFactory = machineFactory;
+        this.memoryFactory = memoryFactory;
+        this.wasi = wasi;
+        this.additionalImports = additionalImports;
+        this.defaultImports = defaultImports;
+        this.refShrinkThreshold = refShrinkThreshold;
+        this.moduleHash = moduleHash;
+        this.snapshot = snapshot;
+        this.transferArenaSize = transferArenaSize;
+        this.executor = executor;
+        this.profiling = profiling;
+        this.metrics = metrics;
+        this.functionExports = Map.copyOf(functionExports(module));
+    }
+
+    private static Map<String, Integer> functionExports(WasmModule module) {
+        var exports = module.exportSection();
+        var result = new HashMap<String, Integer>();
+        for (int i = 0; i < exports.exportCount(); i++) {
+            var export = exports.getExport(i);
+            if (export.exportType() == ExternalType.FUNCTION) {
+                result.put(export.name(), export.index());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Machine factory compiling {@code module} with {@link MachineFactoryCompiler} on first use,
+     * then shared by every instance of it.
+     */
+    static Function<Instance, Machine> compileOnce(
+            WasmModule module, Set<Integer> interpretedFunctions) {
+        return new Function<>() {
+            private Function<Instance, Machine> factory;
+
+            @Override
+            public synchronized Machine apply(Instance instance) {
+                if (factory == null) {
+                    factory =
+                            MachineFactoryCompiler.builder(module)
+                                    .withInterpretedFunctions(interpretedFunctions)
+                                    .compile();
+                }
+                return factory.apply(instance);
+            }
+        };
+    }
+
+    /**
+     * Writes the snapshot of {@code instance} unless another instance of this template already
+     * did: instances created afterwards restore it, instances initializing concurrently don't
+     * rewrite the file while it is read.
+     */
+    synchronized void writeSnapshot(Instance instance, int exitCode) {
+        if (!snapshotWritten) {
+            Snapshot.write(instance, moduleHash, exitCode, snapshot);
+            snapshotWritten = true;
+        }
+    }
+
+    public WasmModule module() {
+        return module;
+    }
+
+    /** Creates a new, independent instance of the module. */
+    public Go newInstance() {
+        return new Go(this);
+    }
+}
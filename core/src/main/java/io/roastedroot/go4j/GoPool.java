@@ -0,0 +1,536 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pool of {@link Go} instances created from a single {@link GoModule} template.
+ *
+ * <p>A {@code Go} instance must only be used by one thread at a time; the pool hands instances
+ * out through {@link Lease}s. When a lease has to wait longer than the grow threshold, a new
+ * instance is created (up to the maximum size); instances that sit idle for longer than the idle
+ * timeout are dropped (down to the initial size). While the pool is above its initial size, idle
+ * instances are also checked on a timer, so a pool that stops receiving calls shrinks too.
+ */
+public final class GoPool implements AutoCloseable {
+    private final GoModule template;
+    private final boolean run;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final long growAfterNanos;
+    private final long idleTimeoutNanos;
+    private final Executor executor;
+
+    // most recently used instances at the head, coldest ones at the tail
+    private final LinkedBlockingDeque<Entry> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder grown = new LongAdder();
+    private final LongAdder shrunk = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    // whether an eviction check is pending on the scheduler, only while above the minimum size
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private GoPool(
+            GoModule template,
+            boolean run,
+            int minSize,
+            int maxSize,
+            Duration acquireTimeout,
+            Duration growAfter,
+            Duration idleTimeout,
+            Executor executor) {
+        this.template = template;
+        this.run = run;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.growAfterNanos = growAfter.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.executor = executor;
+        prefill();
+    }
+
+    public static Builder builder(WasmModule module) {
+        return new Builder(module, null, null, null);
+    }
+
+    /**
+     * Parses {@code wasm} and keeps its bytes and hash, so that pooled instances can use snapshots,
+     * the compilation cache and build-time compiled machines.
+     */
+    public static Builder builder(byte[] wasm) {
+        return new Builder(Parser.parse(wasm), wasm, ModuleHash.sha256(wasm), null);
+    }
+
+    /** Pools instances of {@code template}, configured by the {@link Go.Builder} that built it. */
+    public static Builder builder(GoModule template) {
+        return new Builder(template.module, null, null, template);
+    }
+
+    private void prefill() {
+        var executor =
+                Executors.newFixedThreadPool(
+                        Math.max(1, Math.min(minSize, Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<Go>> instances = new ArrayList<>(minSize);
+            var first = 0;
+            if (template.snapshot != null && minSize > 0) {
+                // initializes and writes a missing or stale snapshot, the others only restore it
+                idle.offerLast(new Entry(newInstance()));
+                size.incrementAndGet();
+                first = 1;
+            }
+            for (int i = first; i < minSize; i++) {
+                instances.add(executor.submit(this::newInstance));
+            }
+            for (var instance : instances) {
+                idle.offerLast(new Entry(instance.get()));
+                size.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating Go instances", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to create Go instance", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Go newInstance() {
+        var go = template.newInstance();
+        if (run) {
+            go.run();
+        }
+        return go;
+    }
+
+    /** Leases an instance, waiting at most the configured acquire timeout. */
+    public Lease lease() {
+        if (closed) {
+            throw new IllegalStateException("GoPool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            var entry = idle.pollFirst();
+            if (entry == null) {
+                entry = idle.pollFirst(growAfterNanos, TimeUnit.NANOSECONDS);
+            }
+            if (entry == null) {
+                entry = tryGrow();
+            }
+            if (entry == null) {
+                long remaining = acquireTimeoutNanos - (System.nanoTime() - start);
+                entry = idle.pollFirst(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            }
+            if (entry == null) {
+                timeouts.increment();
+                throw new IllegalStateException(
+                        "Timed out after "
+                                + Duration.ofNanos(acquireTimeoutNanos)
+                                + " waiting for a Go instance");
+            }
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            leases.increment();
+            inUse.incrementAndGet();
+            return new Lease(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Go instance", e);
+        }
+    }
+
+    public <T> T apply(Function<Go, T> call) {
+        try (var lease = lease()) {
+            return call.apply(lease.go());
+        }
+    }
+
+    public void accept(Consumer<Go> call) {
+        try (var lease = lease()) {
+            call.accept(lease.go());
+        }
+    }
+
+    /**
+     * Runs {@code call} with a leased instance on the executor of the pool: with the default
+     * virtual threads, waiting for an instance doesn't block a platform thread.
+     */
+    public <T> CompletableFuture<T> submit(Function<Go, T> call) {
+        return CompletableFuture.supplyAsync(() -> apply(call), executor);
+    }
+
+    private Entry tryGrow() {
+        while (true) {
+            int current = size.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        Entry entry;
+        try {
+            entry = new Entry(newInstance());
+        } catch (RuntimeException e) {
+            size.decrementAndGet();
+            throw e;
+        }
+        grown.increment();
+        scheduleEviction();
+        return entry;
+    }
+
+    private void release(Entry entry) {
+        inUse.decrementAndGet();
+        if (closed) {
+            size.decrementAndGet();
+            return;
+        }
+        entry.lastUsed = System.nanoTime();
+        evictIdle();
+        idle.offerFirst(entry);
+    }
+
+    // checks the idle instances again after half the idle timeout, as long as the pool can shrink
+    private void scheduleEviction() {
+        if (!closed && size.get() > minSize && evictionScheduled.compareAndSet(false, true)) {
+            GoExecutors.scheduler()
+                    .schedule(
+                            this::scheduledEviction,
+                            Math.max(1, idleTimeoutNanos / 2),
+                            TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void scheduledEviction() {
+        evictionScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        evictIdle();
+        scheduleEviction();
+    }
+
+    // drops the instances idle for longer than the idle timeout, coldest first, down to minSize
+    private void evictIdle() {
+        long now = System.nanoTime();
+        while (true) {
+            var coldest = idle.pollLast();
+            if (coldest == null) {
+                return;
+            }
+            if (now - coldest.lastUsed <= idleTimeoutNanos || !shrink()) {
+                idle.offerLast(coldest);
+                return;
+            }
+            shrunk.increment();
+        }
+    }
+
+    private boolean shrink() {
+        while (true) {
+            int current = size.get();
+            if (current <= minSize) {
+                return false;
+            }
+            if (size.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(
+                size.get(),
+                inUse.get(),
+                leases.sum(),
+                timeouts.sum(),
+                grown.sum(),
+                shrunk.sum(),
+                totalWaitNanos.sum(),
+                maxWaitNanos.get());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        while (idle.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    private static final class Entry {
+        private final Go go;
+        private long lastUsed;
+
+        Entry(Go go) {
+            this.go = go;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    /** Exclusive use of a pooled instance; closing the lease returns it to the pool. */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean released;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Go go() {
+            if (released) {
+                throw new IllegalStateException("Lease already released");
+            }
+            return entry.go;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    /** Point-in-time view of the pool utilization. */
+    public static final class Metrics {
+        private final int size;
+        private final int inUse;
+        private final long leases;
+        private final long timeouts;
+        private final long grown;
+        private final long shrunk;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private Metrics(
+                int size,
+                int inUse,
+                long leases,
+                long timeouts,
+                long grown,
+                long shrunk,
+                long totalWaitNanos,
+                long maxWaitNanos) {
+            this.size = size;
+            this.inUse = inUse;
+            this.leases = leases;
+            this.timeouts = timeouts;
+            this.grown = grown;
+            this.shrunk = shrunk;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int inUse() {
+            return inUse;
+        }
+
+        public int idle() {
+            return Math.max(0, size - inUse);
+        }
+
+        public double utilization() {
+            return (size == 0) ? 0 : (double) inUse / size;
+        }
+
+        public long leases() {
+            return leases;
+        }
+
+        public long timeouts() {
+            return timeouts;
+        }
+
+        public long grown() {
+            return grown;
+        }
+
+        public long shrunk() {
+            return shrunk;
+        }
+
+        public Duration averageWait() {
+            return Duration.ofNanos((leases == 0) ? 0 : totalWaitNanos / leases);
+        }
+
+        public Duration maxWait() {
+            return Duration.ofNanos(maxWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "GoPool.Metrics{size="
+                    + size
+                    + ", inUse="
+                    + inUse
+                    + ", leases="
+                    + leases
+                    + ", timeouts="
+                    + timeouts
+                    + ", grown="
+                    + grown
+                    + ", shrunk="
+                    + shrunk
+                    + ", averageWait="
+                    + averageWait()
+                    + ", maxWait="
+                    + maxWait()
+                    + "}";
+        }
+    }
+
+    public static final class Builder {
+        private final WasmModule module;
+        private final byte[] wasm;
+        private final byte[] moduleHash;
+        private final GoModule template;
+        private Function<Instance, Machine> machineFactory;
+        private Consumer<Go.Builder> config;
+        private boolean run = true;
+        private int initialSize = Runtime.getRuntime().availableProcessors();
+        private int maxSize = -1;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration growAfter = Duration.ofMillis(10);
+        private Duration idleTimeout = Duration.ofMinutes(1);
+        private Executor executor;
+
+        private Builder(WasmModule module, byte[] wasm, byte[] moduleHash, GoModule template) {
+            this.module = module;
+            this.wasm = wasm;
+            this.moduleHash = moduleHash;
+            this.template = template;
+        }
+
+        public Builder withMachineFactory(Function<Instance, Machine> machineFactory) {
+            this.machineFactory = machineFactory;
+            return this;
+        }
+
+        /**
+         * Applied once to the {@link Go.Builder} of the template of the pooled instances, e.g. to
+         * configure WASI or additional imports.
+         */
+        public Builder withGoBuilder(Consumer<Go.Builder> config) {
+            this.config = config;
+            return this;
+        }
+
+        /** Whether to call {@link Go#run()} on every new instance, defaults to {@code true}. */
+        public Builder withRun(boolean run) {
+            this.run = run;
+            return this;
+        }
+
+        public Builder withInitialSize(int initialSize) {
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        public Builder withMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder withAcquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        /** How long a lease waits for an idle instance before the pool grows. */
+        public Builder withGrowAfter(Duration growAfter) {
+            this.growAfter = growAfter;
+            return this;
+        }
+
+        /** How long an instance can stay idle before the pool shrinks. */
+        public Builder withIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Executor running the calls passed to {@link GoPool#submit(Function)}, by default virtual
+         * threads when available.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public GoPool build() {
+            if (initialSize < 0) {
+                throw new IllegalArgumentException("initialSize must be >= 0: " + initialSize);
+            }
+            var max = (maxSize < 0) ? Math.max(1, initialSize) : maxSize;
+            if (max < Math.max(1, initialSize)) {
+                throw new IllegalArgumentException(
+                        "maxSize (" + max + ") must be >= initialSize (" + initialSize + ")");
+            }
+            return new GoPool(
+                    template(),
+                    run,
+                    initialSize,
+                    max,
+                    acquireTimeout,
+                    growAfter,
+                    idleTimeout,
+                    (executor != null) ? executor : GoExecutors.defaultExecutor());
+        }
+
+        private GoModule template() {
+            if (template != null) {
+                if (machineFactory != null || config != null) {
+                    throw new IllegalStateException(
+                            "The instances of a GoModule are configured by its Go.Builder");
+                }
+                return template;
+            }
+            var builder = Go.builder(module, wasm, moduleHash);
+            if (machineFactory != null) {
+                builder.withMachineFactory(machineFactory);
+            }
+            if (config != null) {
+                config.accept(builder);
+            }
+            return builder.buildModule();
+        }
+    }
+}
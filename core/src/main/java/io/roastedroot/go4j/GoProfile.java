@@ -0,0 +1,119 @@
+package io.roastedroot.go4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Functions of a module run by a workload, recorded by an instance built {@link
+ * Go.Builder#withProfiling()}. The functions that never ran are good candidates to stay
+ * interpreted when the module is compiled, see {@link
+ * Go.Builder#withInterpretedFunctions(Set)}:
+ *
+ * <pre>{@code
+ * var go = Go.builder(wasm).withWasi().withProfiling().build();
+ * // run a representative workload
+ * go.profile().orElseThrow().write(Path.of("module.profile"));
+ *
+ * var compiled = Go.builder(wasm)
+ *         .withWasi()
+ *         .withCompilationCache(Path.of("cache"))
+ *         .withInterpretedFunctions(GoProfile.readColdFunctions(Path.of("module.profile")))
+ *         .build();
+ * }</pre>
+ *
+ * <p>The file is a properties file whose {@code interpretedFunctions} property lists the cold
+ * functions separated by commas, the format of the {@code interpretedFunctions} parameter of
+ * {@code chicory-compiler-maven-plugin}: a build can read it with {@code
+ * properties-maven-plugin} and compile the hot functions only. Function indexes count the
+ * imported functions first, as in the module.
+ *
+ * <p>Compiling the hot functions only is experimental: on the modules of this repository it
+ * starts slower than compiling everything, see {@code ProfileGuidedBenchmark}.
+ */
+public final class GoProfile {
+    /** Property of the profile file listing the cold functions. */
+    public static final String INTERPRETED_FUNCTIONS = "interpretedFunctions";
+
+    private static final String HEADER = "# go4j profile: functions never run";
+
+    private final int imported;
+    private final int defined;
+    private final BitSet executed;
+
+    GoProfile(int imported, int defined, BitSet executed) {
+        this.imported = imported;
+        this.defined = defined;
+        this.executed = executed;
+    }
+
+    /** Functions defined by the module that ran at least once. */
+    public Set<Integer> hotFunctions() {
+        return functions(true);
+    }
+
+    /** Functions defined by the module that never ran. */
+    public Set<Integer> coldFunctions() {
+        return functions(false);
+    }
+
+    private Set<Integer> functions(boolean hot) {
+        var result = new TreeSet<Integer>();
+        for (int i = imported; i < imported + defined; i++) {
+            if (executed.get(i) == hot) {
+                result.add(i);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /** Writes the cold functions to {@code file}, as read by {@link #readColdFunctions(Path)}. */
+    public void write(Path file) {
+        var cold = coldFunctions().stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            Files.write(
+                    file,
+                    List.of(HEADER, INTERPRETED_FUNCTIONS + "=" + cold),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write profile " + file, e);
+        }
+    }
+
+    public static Set<Integer> readColdFunctions(Path file) {
+        var properties = new Properties();
+        try (var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read profile " + file, e);
+        }
+        var functions = properties.getProperty(INTERPRETED_FUNCTIONS);
+        if (functions == null) {
+            throw new IllegalArgumentException(
+                    "Profile " + file + " has no " + INTERPRETED_FUNCTIONS + " property");
+        }
+        var result = new TreeSet<Integer>();
+        for (var function : functions.split(",")) {
+            var value = function.strip();
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                result.add(Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid function index in profile " + file + ": " + value, e);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+}
@@ -0,0 +1,65 @@
+package io.roastedroot.go4j;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+final class ModuleHash {
+    static final int LENGTH = 32;
+
+    // magic number and version
+    private static final int PREAMBLE_LENGTH = 8;
+    private static final byte CUSTOM_SECTION_ID = 0;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ModuleHash() {}
+
+    static byte[] sha256(byte[] wasm) {
+        return sha256().digest(wasm);
+    }
+
+    /**
+     * SHA-256 of {@code wasm} without its custom sections (names, debug information, producers),
+     * which don't change what the module runs. The other sections are hashed byte for byte.
+     */
+    static byte[] sha256WithoutCustomSections(byte[] wasm) {
+        var digest = sha256();
+        var start = Math.min(PREAMBLE_LENGTH, wasm.length);
+        digest.update(wasm, 0, start);
+        while (start < wasm.length) {
+            // id, LEB128 size, content
+            var pos = start + 1;
+            long size = 0;
+            for (int shift = 0; pos < wasm.length && shift < 35; shift += 7) {
+                var b = wasm[pos++];
+                size |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            var end = (int) Math.min(wasm.length, pos + size);
+            if (wasm[start] != CUSTOM_SECTION_ID) {
+                digest.update(wasm, start, end - start);
+            }
+            start = end;
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String hex(byte[] hash) {
+        var result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(result);
+    }
+}
@@ -0,0 +1,122 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Memory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bulk copies of primitive arrays to and from guest memory through little-endian buffer views:
+ * directly on {@link DirectMemory}, otherwise through a caller owned scratch buffer (writes) or a
+ * single {@code readBytes} (reads).
+ */
+final class PrimitiveArrays {
+
+    private PrimitiveArrays() {}
+
+    static int byteSize(int length, int elementBytes) {
+        return Math.multiplyExact(length, elementBytes);
+    }
+
+    private static ByteBuffer view(Memory memory, int ptr, int size) {
+        if (memory instanceof DirectMemory) {
+            return ((DirectMemory) memory).slice(ptr, size);
+        }
+        return ByteBuffer.wrap(memory.readBytes(ptr, size)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer scratch(byte[] scratch) {
+        return ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static void write(Memory memory, int ptr, int[] values, byte[] scratch) {
+        if (memory instanceof DirectMemory) {
+            var size = byteSize(values.length, Integer.BYTES);
+            ((DirectMemory) memory).slice(ptr, size).asIntBuffer().put(values);
+            return;
+        }
+        var buffer = scratch(scratch).asIntBuffer();
+        var i = 0;
+        while (i < values.length) {
+            var n = Math.min(buffer.capacity(), values.length - i);
+            buffer.clear();
+            buffer.put(values, i, n);
+            memory.write(ptr + i * Integer.BYTES, scratch, 0, n * Integer.BYTES);
+            i += n;
+        }
+    }
+
+    static void write(Memory memory, int ptr, long[] values, byte[] scratch) {
+        if (memory instanceof DirectMemory) {
+            var size = byteSize(values.length, Long.BYTES);
+            ((DirectMemory) memory).slice(ptr, size).asLongBuffer().put(values);
+            return;
+        }
+        var buffer = scratch(scratch).asLongBuffer();
+        var i = 0;
+        while (i < values.length) {
+            var n = Math.min(buffer.capacity(), values.length - i);
+            buffer.clear();
+            buffer.put(values, i, n);
+            memory.write(ptr + i * Long.BYTES, scratch, 0, n * Long.BYTES);
+            i += n;
+        }
+    }
+
+    static void write(Memory memory, int ptr, float[] values, byte[] scratch) {
+        if (memory instanceof DirectMemory) {
+            var size = byteSize(values.length, Float.BYTES);
+            ((DirectMemory) memory).slice(ptr, size).asFloatBuffer().put(values);
+            return;
+        }
+        var buffer = scratch(scratch).asFloatBuffer();
+        var i = 0;
+        while (i < values.length) {
+            var n = Math.min(buffer.capacity(), values.length - i);
+            buffer.clear();
+            buffer.put(values, i, n);
+            memory.write(ptr + i * Float.BYTES, scratch, 0, n * Float.BYTES);
+            i += n;
+        }
+    }
+
+    static void write(Memory memory, int ptr, double[] values, byte[] scratch) {
+        if (memory instanceof DirectMemory) {
+            var size = byteSize(values.length, Double.BYTES);
+            ((DirectMemory) memory).slice(ptr, size).asDoubleBuffer().put(values);
+            return;
+        }
+        var buffer = scratch(scratch).asDoubleBuffer();
+        var i = 0;
+        while (i < values.length) {
+            var n = Math.min(buffer.capacity(), values.length - i);
+            buffer.clear();
+            buffer.put(values, i, n);
+            memory.write(ptr + i * Double.BYTES, scratch, 0, n * Double.BYTES);
+            i += n;
+        }
+    }
+
+    static int[] readInts(Memory memory, int ptr, int length) {
+        var result = new int[length];
+        view(memory, ptr, byteSize(length, Integer.BYTES)).asIntBuffer().get(result);
+        return result;
+    }
+
+    static long[] readLongs(Memory memory, int ptr, int length) {
+        var result = new long[length];
+        view(memory, ptr, byteSize(length, Long.BYTES)).asLongBuffer().get(result);
+        return result;
+    }
+
+    static float[] readFloats(Memory memory, int ptr, int length) {
+        var result = new float[length];
+        view(memory, ptr, byteSize(length, Float.BYTES)).asFloatBuffer().get(result);
+        return result;
+    }
+
+    static double[] readDoubles(Memory memory, int ptr, int length) {
+        var result = new double[length];
+        view(memory, ptr, byteSize(length, Double.BYTES)).asDoubleBuffer().get(result);
+        return result;
+    }
+}
@@ -1,58 +1,544 @@
 package io.roastedroot.go4j;
 
-import java.util.ArrayDeque;
 import java.util.Arrays;
 
+/**
+ * Table of Java objects referenced from the guest.
+ *
+ * <p>Each {@code Go} instance owns its own store, which can be used from several threads at once.
+ * Slots are split across independent stripes, each guarded by its own lock: a thread registers
+ * references in the stripe selected by its id, so threads registering and releasing references
+ * rarely contend.
+ *
+ * <p>Handles are positive ints: their low bits select the stripe. Within a stripe of {@code 2^k}
+ * slots, the next {@code k} bits select the slot and the remaining bits count the reuses of that
+ * slot. Every handle issued for a slot is greater than the previous ones, also across resizes, so
+ * a stale handle fails loudly instead of reading a recycled slot until the slot has been reused
+ * about {@code 2^(31 - k - stripe bits)} times. When a stripe grows, live handles keep their value
+ * and move to the slot their next bit selects.
+ *
+ * <p>Free slots are chained through a primitive array, so registering and releasing references
+ * does not allocate once the table has warmed up. When occupancy of a stripe drops to the
+ * configured shrink threshold, the stripe is halved as long as no two live handles select the same
+ * slot of the smaller table.
+ *
+ * <p>Numeric and boolean values set through the typed accessors ({@link #registerLong(long)},
+ * {@link #setDouble(int, double)}, {@link #getLong(int)}, ...) are kept unboxed in a parallel
+ * {@code long[]} tagged with their kind. {@link #get(int)} still returns them boxed.
+ *
+ * <p>Interned refs ({@link #registerInterned(Object)}) are shared by several owners: the count is
+ * kept in the same {@code long[]}, each owner {@link #disown(int) disowns} the ref and the last
+ * one releases it. They only hold objects.
+ */
 public class RefStore {
-    // we need to avoid returning 0 to disambiguate with NULL
-    private static int OFFSET = 1;
-    private static int MIN_CAPACITY = 8;
-    private static int count;
-    private static ArrayDeque<Integer> emptySlots = new ArrayDeque<>();
-    private static Object[] store = new Object[MIN_CAPACITY];
+    private static final int MIN_CAPACITY = 8;
+    private static final int MAX_STRIPES = 64;
+    private static final int END = -1;
 
-    public RefStore() {}
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOL = 5;
+    private static final byte INTERNED = 6;
+    static final double DEFAULT_SHRINK_THRESHOLD = 0.25;
 
-    private static void increaseCapacity() {
-        final int newCapacity = store.length << 1;
-        var array = Arrays.copyOf(store, newCapacity);
-        store = array;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public RefStore() {
+        this(DEFAULT_SHRINK_THRESHOLD);
+    }
+
+    /**
+     * @param shrinkThreshold fraction of the capacity of a stripe that, once occupancy drops to it,
+     *     triggers halving the stripe
+     */
+    public RefStore(double shrinkThreshold) {
+        this(Runtime.getRuntime().availableProcessors(), shrinkThreshold);
+    }
+
+    /**
+     * @param concurrency expected number of threads using the store at once, rounded up to a power
+     *     of two stripes, at most 64
+     * @param shrinkThreshold fraction of the capacity of a stripe that, once occupancy drops to it,
+     *     triggers halving the stripe
+     */
+    public RefStore(int concurrency, double shrinkThreshold) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        }
+        if (!(shrinkThreshold >= 0 && shrinkThreshold < 1)) {
+            throw new IllegalArgumentException(
+                    "shrinkThreshold must be in [0, 1): " + shrinkThreshold);
+        }
+        int count = 1;
+        while (count < concurrency && count < MAX_STRIPES) {
+            count <<= 1;
+        }
+        var stripeBits = Integer.numberOfTrailingZeros(count);
+        this.stripeMask = count - 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(i, stripeBits, shrinkThreshold);
+        }
     }
 
     public int registerRef(Object obj) {
-        int result;
-        if (emptySlots.isEmpty()) {
-            store[count] = obj;
-            count++;
+        return current().register(OBJECT, obj, 0L);
+    }
 
-            if (count == store.length) {
-                increaseCapacity();
-            }
-            result = (count - 1);
-        } else {
-            int emptySlot = emptySlots.pop();
-            // just a sanity check
-            assert (store[emptySlot] == null);
+    public int registerInt(int value) {
+        return current().register(INT, null, value);
+    }
+
+    public int registerLong(long value) {
+        return current().register(LONG, null, value);
+    }
+
+    public int registerFloat(float value) {
+        return current().register(FLOAT, null, Float.floatToRawIntBits(value));
+    }
+
+    public int registerDouble(double value) {
+        return current().register(DOUBLE, null, Double.doubleToRawLongBits(value));
+    }
+
+    public int registerBool(boolean value) {
+        return current().register(BOOL, null, value ? 1L : 0L);
+    }
+
+    /** Registers {@code obj} with a single owner, see {@link #retain(int)}. */
+    public int registerInterned(Object obj) {
+        return current().register(INTERNED, obj, 1L);
+    }
+
+    private Stripe current() {
+        return stripes[(int) Thread.currentThread().getId() & stripeMask];
+    }
+
+    private Stripe stripe(int ref) {
+        return stripes[ref & stripeMask];
+    }
+
+    public void free(int ref) {
+        stripe(ref).free(ref);
+    }
+
+    public boolean isInterned(int ref) {
+        return stripe(ref).isInterned(ref);
+    }
+
+    /** Adds an owner to the interned {@code ref}. */
+    public void retain(int ref) {
+        stripe(ref).retain(ref);
+    }
+
+    /**
+     * Drops an owner of the interned {@code ref}, returning {@code true} when it was the last one
+     * and the ref has been freed.
+     */
+    public boolean disown(int ref) {
+        return stripe(ref).disown(ref);
+    }
+
+    /**
+     * Frees {@code ref} if it is still live, returning {@code false} when it was already released
+     * (or its slot recycled) instead of failing.
+     */
+    public boolean release(int ref) {
+        return stripe(ref).release(ref);
+    }
+
+    public Object get(int ref) {
+        return stripe(ref).get(ref);
+    }
+
+    public void set(int ref, Object obj) {
+        stripe(ref).put(ref, OBJECT, obj, 0L);
+    }
+
+    /** Replaces the object of the interned {@code ref}, which keeps its owners. */
+    public void setInterned(int ref, Object obj) {
+        stripe(ref).setInterned(ref, obj);
+    }
+
+    public void setInt(int ref, int value) {
+        stripe(ref).put(ref, INT, null, value);
+    }
+
+    public void setLong(int ref, long value) {
+        stripe(ref).put(ref, LONG, null, value);
+    }
+
+    public void setFloat(int ref, float value) {
+        stripe(ref).put(ref, FLOAT, null, Float.floatToRawIntBits(value));
+    }
+
+    public void setDouble(int ref, double value) {
+        stripe(ref).put(ref, DOUBLE, null, Double.doubleToRawLongBits(value));
+    }
 
-            store[emptySlot] = obj;
-            result = emptySlot;
+    public void setBool(int ref, boolean value) {
+        stripe(ref).put(ref, BOOL, null, value ? 1L : 0L);
+    }
+
+    public int getInt(int ref) {
+        return (int) getLong(ref);
+    }
+
+    public long getLong(int ref) {
+        return stripe(ref).getLong(ref);
+    }
+
+    public float getFloat(int ref) {
+        return (float) getDouble(ref);
+    }
+
+    public double getDouble(int ref) {
+        return stripe(ref).getDouble(ref);
+    }
+
+    public boolean getBool(int ref) {
+        return stripe(ref).getBool(ref);
+    }
+
+    /** Number of slots currently allocated across all stripes. */
+    public int capacity() {
+        int result = 0;
+        for (var stripe : stripes) {
+            result += stripe.capacity();
         }
-        return result + OFFSET;
+        return result;
     }
 
-    public void free(int idx) {
-        idx = idx - OFFSET;
-        store[idx] = null;
-        emptySlots.push(idx);
+    /** Number of references currently registered. */
+    public int liveCount() {
+        int result = 0;
+        for (var stripe : stripes) {
+            result += stripe.liveCount();
+        }
+        return result;
     }
 
-    public Object get(int idx) {
-        idx = idx - OFFSET;
-        return store[idx];
+    /**
+     * Peak number of live references, summed over the peaks of the stripes: exact when a single
+     * thread uses the store, otherwise an upper bound.
+     */
+    public int highWaterMark() {
+        int result = 0;
+        for (var stripe : stripes) {
+            result += stripe.highWaterMark();
+        }
+        return result;
     }
 
-    public void set(int idx, Object obj) {
-        idx = idx - OFFSET;
-        store[idx] = obj;
+    // A table of its own: handles issued by a stripe are shifted left by the stripe bits, which
+    // hold the index of the stripe.
+    private static final class Stripe {
+        private final int index;
+        private final int shift;
+        // the shifted handles stay positive
+        private final int maxCapacity;
+        private final int maxHandle;
+        private final double shrinkThreshold;
+
+        private Object[] store = new Object[MIN_CAPACITY];
+        private long[] primitives = new long[MIN_CAPACITY];
+        private byte[] kinds = new byte[MIN_CAPACITY];
+        // handle of the live ref of each slot, unshifted, 0 when the slot is free
+        private int[] handles = new int[MIN_CAPACITY];
+        // last handle issued for each slot, the next one is greater
+        private int[] issued = new int[MIN_CAPACITY];
+        // intrusive free list: next free slot of each free slot
+        private int[] next = new int[MIN_CAPACITY];
+        private int mask = MIN_CAPACITY - 1;
+        private int freeHead;
+        private int live;
+        private int highWaterMark;
+        private int shrinkMark;
+
+        Stripe(int index, int shift, double shrinkThreshold) {
+            this.index = index;
+            this.shift = shift;
+            this.maxCapacity = 1 << (30 - shift);
+            this.maxHandle = Integer.MAX_VALUE >>> shift;
+            this.shrinkThreshold = shrinkThreshold;
+            for (int i = 0; i < MIN_CAPACITY; i++) {
+                // as if generation 0 had been issued: handles are never 0, which is NULL
+                issued[i] = i;
+            }
+            rebuildFreeList();
+            this.shrinkMark = shrinkMark(MIN_CAPACITY);
+        }
+
+        synchronized int register(byte kind, Object obj, long bits) {
+            if (freeHead == END) {
+                if (store.length == maxCapacity) {
+                    throw new IllegalStateException(
+                            "RefStore is full: " + live + " live refs in a stripe");
+                }
+                grow();
+            }
+            int slot = freeHead;
+            freeHead = next[slot];
+            int capacity = store.length;
+            int handle = issued[slot] + capacity;
+            if (handle < 0 || handle > maxHandle) {
+                // the reuses of the slot overflowed, start again from its first generation
+                handle = slot + capacity;
+            }
+            issued[slot] = handle;
+            handles[slot] = handle;
+            store[slot] = obj;
+            primitives[slot] = bits;
+            kinds[slot] = kind;
+            live++;
+            if (live > highWaterMark) {
+                highWaterMark = live;
+            }
+            return (handle << shift) | index;
+        }
+
+        synchronized void free(int ref) {
+            int slot = slot(ref);
+            handles[slot] = 0;
+            store[slot] = null;
+            kinds[slot] = OBJECT;
+            next[slot] = freeHead;
+            freeHead = slot;
+            live--;
+            if (live == shrinkMark) {
+                shrink();
+            }
+        }
+
+        synchronized boolean isInterned(int ref) {
+            return kinds[slot(ref)] == INTERNED;
+        }
+
+        synchronized void retain(int ref) {
+            primitives[interned(ref)]++;
+        }
+
+        synchronized boolean disown(int ref) {
+            var slot = interned(ref);
+            if (--primitives[slot] > 0) {
+                return false;
+            }
+            free(ref);
+            return true;
+        }
+
+        private int interned(int ref) {
+            var slot = slot(ref);
+            if (kinds[slot] != INTERNED) {
+                throw new IllegalStateException("JavaRef " + ref + " is not interned");
+            }
+            return slot;
+        }
+
+        synchronized boolean release(int ref) {
+            int handle = ref >>> shift;
+            if (ref == 0 || handles[handle & mask] != handle) {
+                return false;
+            }
+            free(ref);
+            return true;
+        }
+
+        synchronized Object get(int ref) {
+            return boxed(slot(ref));
+        }
+
+        private Object boxed(int slot) {
+            long bits = primitives[slot];
+            switch (kinds[slot]) {
+                case INT:
+                    return (int) bits;
+                case LONG:
+                    return bits;
+                case FLOAT:
+                    return Float.intBitsToFloat((int) bits);
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                case BOOL:
+                    return bits != 0;
+                default:
+                    return store[slot];
+            }
+        }
+
+        synchronized void setInterned(int ref, Object obj) {
+            store[interned(ref)] = obj;
+        }
+
+        synchronized void put(int ref, byte kind, Object obj, long bits) {
+            int slot = slot(ref);
+            if (kinds[slot] == INTERNED) {
+                // the owner count would be lost
+                throw new IllegalStateException("JavaRef " + ref + " is interned, use setInterned");
+            }
+            store[slot] = obj;
+            primitives[slot] = bits;
+            kinds[slot] = kind;
+        }
+
+        synchronized long getLong(int ref) {
+            int slot = slot(ref);
+            long bits = primitives[slot];
+            switch (kinds[slot]) {
+                case INT:
+                case LONG:
+                    return bits;
+                case FLOAT:
+                    return (long) Float.intBitsToFloat((int) bits);
+                case DOUBLE:
+                    return (long) Double.longBitsToDouble(bits);
+                default:
+                    return ((Number) boxed(slot)).longValue();
+            }
+        }
+
+        synchronized double getDouble(int ref) {
+            int slot = slot(ref);
+            long bits = primitives[slot];
+            switch (kinds[slot]) {
+                case INT:
+                case LONG:
+                    return bits;
+                case FLOAT:
+                    return Float.intBitsToFloat((int) bits);
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits);
+                default:
+                    return ((Number) boxed(slot)).doubleValue();
+            }
+        }
+
+        synchronized boolean getBool(int ref) {
+            int slot = slot(ref);
+            if (kinds[slot] == BOOL) {
+                return primitives[slot] != 0;
+            }
+            return (Boolean) boxed(slot);
+        }
+
+        synchronized int capacity() {
+            return store.length;
+        }
+
+        synchronized int liveCount() {
+            return live;
+        }
+
+        synchronized int highWaterMark() {
+            return highWaterMark;
+        }
+
+        private int slot(int ref) {
+            int handle = ref >>> shift;
+            int slot = handle & mask;
+            if (ref == 0 || handles[slot] != handle) {
+                throw new IllegalStateException(
+                        "Stale or invalid JavaRef: " + ref + " (already freed or never allocated)");
+            }
+            return slot;
+        }
+
+        private int shrinkMark(int capacity) {
+            return (capacity > MIN_CAPACITY) ? (int) (capacity * shrinkThreshold) : -1;
+        }
+
+        // Doubles the table: the live handles move to the slot selected by their next bit, the
+        // slots of a pair continue the handles issued for the slot they come from.
+        private void grow() {
+            int capacity = store.length;
+            int newCapacity = capacity << 1;
+            var newStore = new Object[newCapacity];
+            var newPrimitives = new long[newCapacity];
+            var newKinds = new byte[newCapacity];
+            var newHandles = new int[newCapacity];
+            var newIssued = new int[newCapacity];
+            int newMask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                int last = issued[slot];
+                newIssued[slot] = last & ~capacity;
+                newIssued[slot + capacity] = last | capacity;
+                int handle = handles[slot];
+                if (handle != 0) {
+                    int target = handle & newMask;
+                    newStore[target] = store[slot];
+                    newPrimitives[target] = primitives[slot];
+                    newKinds[target] = kinds[slot];
+                    newHandles[target] = handle;
+                }
+            }
+            store = newStore;
+            primitives = newPrimitives;
+            kinds = newKinds;
+            handles = newHandles;
+            issued = newIssued;
+            next = new int[newCapacity];
+            mask = newMask;
+            rebuildFreeList();
+            shrinkMark = shrinkMark(newCapacity);
+        }
+
+        // Halves the table while occupancy stays at or below the shrink threshold and the live
+        // handles select distinct slots of the halved table.
+        private void shrink() {
+            int capacity = store.length;
+            while (live <= shrinkMark(capacity) && canHalve(capacity)) {
+                int half = capacity >> 1;
+                for (int slot = 0; slot < half; slot++) {
+                    int high = slot + half;
+                    issued[slot] = Math.max(issued[slot], issued[high]);
+                    if (handles[high] != 0) {
+                        store[slot] = store[high];
+                        primitives[slot] = primitives[high];
+                        kinds[slot] = kinds[high];
+                        handles[slot] = handles[high];
+                    }
+                }
+                capacity = half;
+            }
+            if (capacity < store.length) {
+                store = Arrays.copyOf(store, capacity);
+                primitives = Arrays.copyOf(primitives, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+                handles = Arrays.copyOf(handles, capacity);
+                issued = Arrays.copyOf(issued, capacity);
+                next = new int[capacity];
+                mask = capacity - 1;
+                rebuildFreeList();
+                shrinkMark = shrinkMark(capacity);
+            } else {
+                // live handles collide in the smaller table, try again once occupancy halves
+                shrinkMark = live >> 1;
+            }
+        }
+
+        private boolean canHalve(int capacity) {
+            int half = capacity >> 1;
+            for (int slot = 0; slot < half; slot++) {
+                if (handles[slot] != 0 && handles[slot + half] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // chains the free slots in ascending order so that low slots are reused first
+        private void rebuildFreeList() {
+            freeHead = END;
+            for (int slot = handles.length - 1; slot >= 0; slot--) {
+                if (handles[slot] == 0) {
+                    next[slot] = freeHead;
+                    freeHead = slot;
+                }
+            }
+        }
     }
 }
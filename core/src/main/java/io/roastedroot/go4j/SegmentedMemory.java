@@ -0,0 +1,264 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Guest memory split in fixed size {@code byte[]} segments: growing appends segments instead of
+ * copying the whole linear memory into a larger array, which keeps {@code memory.grow} cheap for
+ * heaps of hundreds of MB.
+ *
+ * <p>Accesses within one segment go straight to its array; only the ones straddling two segments
+ * are assembled byte by byte. Memory is allocated a segment at a time.
+ *
+ * <pre>{@code
+ * var go = Go.builder(module).withMemoryFactory(SegmentedMemory::new).build();
+ * }</pre>
+ */
+public final class SegmentedMemory extends AbstractMemory {
+    /** 1 MiB segments. */
+    public static final int DEFAULT_SEGMENT_PAGES = 16;
+
+    private static final VarHandle SHORTS =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final int segmentSize;
+    private final int shift;
+    private final int mask;
+    private byte[][] segments;
+    private int pages;
+    private int byteSize;
+
+    public SegmentedMemory(MemoryLimits limits) {
+        this(limits, DEFAULT_SEGMENT_PAGES);
+    }
+
+    /** {@code segmentPages} must be a power of two. */
+    public SegmentedMemory(MemoryLimits limits, int segmentPages) {
+        super(limits);
+        if (segmentPages <= 0 || Integer.bitCount(segmentPages) != 1) {
+            throw new IllegalArgumentException(
+                    "Segment pages must be a power of two: " + segmentPages);
+        }
+        this.segmentSize = Memory.bytes(segmentPages);
+        this.shift = Integer.numberOfTrailingZeros(segmentSize);
+        this.mask = segmentSize - 1;
+        this.segments = new byte[0][];
+        resize(limits.initialPages());
+    }
+
+    private void resize(int pages) {
+        var bytes = Memory.bytes(pages);
+        var count = (int) (((long) bytes + segmentSize - 1) >>> shift);
+        if (count > segments.length) {
+            var previous = segments.length;
+            segments = Arrays.copyOf(segments, count);
+            for (int i = previous; i < count; i++) {
+                segments[i] = new byte[segmentSize];
+            }
+        }
+        this.pages = pages;
+        this.byteSize = bytes;
+    }
+
+    private void checkBounds(int addr, int len) {
+        if (addr < 0 || len < 0 || addr > byteSize - len) {
+            throw outOfBounds(addr, len);
+        }
+    }
+
+    // little endian, for accesses across two segments
+    private long readSlow(int addr, int len) {
+        var result = 0L;
+        for (int i = 0; i < len; i++) {
+            var b = segments[(addr + i) >>> shift][(addr + i) & mask] & 0xFFL;
+            result |= b << (i * 8);
+        }
+        return result;
+    }
+
+    private void writeSlow(int addr, long value, int len) {
+        for (int i = 0; i < len; i++) {
+            segments[(addr + i) >>> shift][(addr + i) & mask] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    @Override
+    public int pages() {
+        return pages;
+    }
+
+    @Override
+    public int grow(int size) {
+        var previous = pages;
+        var target = previous + size;
+        if (size < 0 || target > maximumPages() || target < previous) {
+            return -1;
+        }
+        resize(target);
+        return previous;
+    }
+
+    @Override
+    public void write(int addr, byte[] data, int offset, int size) {
+        checkBounds(addr, size);
+        var pos = addr;
+        var from = offset;
+        var end = offset + size;
+        while (from < end) {
+            var at = pos & mask;
+            var n = Math.min(end - from, segmentSize - at);
+            System.arraycopy(data, from, segments[pos >>> shift], at, n);
+            pos += n;
+            from += n;
+        }
+    }
+
+    @Override
+    public byte read(int addr) {
+        checkBounds(addr, Byte.BYTES);
+        return segments[addr >>> shift][addr & mask];
+    }
+
+    @Override
+    public byte[] readBytes(int addr, int len) {
+        checkBounds(addr, len);
+        var result = new byte[len];
+        var pos = addr;
+        var to = 0;
+        while (to < len) {
+            var at = pos & mask;
+            var n = Math.min(len - to, segmentSize - at);
+            System.arraycopy(segments[pos >>> shift], at, result, to, n);
+            pos += n;
+            to += n;
+        }
+        return result;
+    }
+
+    @Override
+    public void writeI32(int addr, int data) {
+        checkBounds(addr, Integer.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Integer.BYTES) {
+            INTS.set(segments[addr >>> shift], at, data);
+        } else {
+            writeSlow(addr, data, Integer.BYTES);
+        }
+    }
+
+    @Override
+    public int readInt(int addr) {
+        checkBounds(addr, Integer.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Integer.BYTES) {
+            return (int) INTS.get(segments[addr >>> shift], at);
+        }
+        return (int) readSlow(addr, Integer.BYTES);
+    }
+
+    @Override
+    public void writeLong(int addr, long data) {
+        checkBounds(addr, Long.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Long.BYTES) {
+            LONGS.set(segments[addr >>> shift], at, data);
+        } else {
+            writeSlow(addr, data, Long.BYTES);
+        }
+    }
+
+    @Override
+    public long readLong(int addr) {
+        checkBounds(addr, Long.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Long.BYTES) {
+            return (long) LONGS.get(segments[addr >>> shift], at);
+        }
+        return readSlow(addr, Long.BYTES);
+    }
+
+    @Override
+    public void writeShort(int addr, short data) {
+        checkBounds(addr, Short.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Short.BYTES) {
+            SHORTS.set(segments[addr >>> shift], at, data);
+        } else {
+            writeSlow(addr, data, Short.BYTES);
+        }
+    }
+
+    @Override
+    public short readShort(int addr) {
+        checkBounds(addr, Short.BYTES);
+        var at = addr & mask;
+        if (at <= segmentSize - Short.BYTES) {
+            return (short) SHORTS.get(segments[addr >>> shift], at);
+        }
+        return (short) readSlow(addr, Short.BYTES);
+    }
+
+    @Override
+    public void writeByte(int addr, byte data) {
+        checkBounds(addr, Byte.BYTES);
+        segments[addr >>> shift][addr & mask] = data;
+    }
+
+    @Override
+    public void fill(byte value, int fromIndex, int toIndex) {
+        checkBounds(fromIndex, toIndex - fromIndex);
+        var pos = fromIndex;
+        while (pos < toIndex) {
+            var at = pos & mask;
+            var n = Math.min(toIndex - pos, segmentSize - at);
+            Arrays.fill(segments[pos >>> shift], at, at + n, value);
+            pos += n;
+        }
+    }
+
+    @Override
+    public void copy(int dest, int src, int size) {
+        checkBounds(src, size);
+        checkBounds(dest, size);
+        if (dest <= src || dest >= src + size) {
+            // front to back never overwrites bytes still to be read
+            var done = 0;
+            while (done < size) {
+                var from = src + done;
+                var to = dest + done;
+                var n = Math.min(size - done, segmentSize - Math.max(from & mask, to & mask));
+                System.arraycopy(
+                        segments[from >>> shift],
+                        from & mask,
+                        segments[to >>> shift],
+                        to & mask,
+                        n);
+                done += n;
+            }
+        } else {
+            // dest overlaps the tail of src: back to front
+            var left = size;
+            while (left > 0) {
+                var from = src + left - 1;
+                var to = dest + left - 1;
+                var n = Math.min(left, Math.min(from & mask, to & mask) + 1);
+                System.arraycopy(
+                        segments[from >>> shift],
+                        (from & mask) - n + 1,
+                        segments[to >>> shift],
+                        (to & mask) - n + 1,
+                        n);
+                left -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.MutabilityType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Post-initialization image of an instance: the linear memory, the mutable globals and the exit
+ * code of {@code _start} (0 for reactors), tagged with the hash of the module they belong to. Host
+ * refs are not part of the image.
+ */
+final class Snapshot {
+    private static final int MAGIC = 0x47344a53; // "G4JS"
+    private static final int VERSION = 1;
+    private static final int CHUNK = Memory.PAGE_SIZE;
+
+    private Snapshot() {}
+
+    /**
+     * Loads {@code file} into {@code instance} and returns the recorded exit code; returns empty,
+     * leaving the instance untouched, when the file is missing or has been taken from a different
+     * module, or is unreadable.
+     */
+    static OptionalInt restore(Instance instance, byte[] moduleHash, Path file) {
+        if (!Files.isRegularFile(file)) {
+            return OptionalInt.empty();
+        }
+        var modified = false;
+        try (var in =
+                new DataInputStream(
+                        new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return OptionalInt.empty();
+            }
+            var hash = new byte[ModuleHash.LENGTH];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, moduleHash)) {
+                return OptionalInt.empty();
+            }
+            var exitCode = in.readInt();
+            var globals = mutableGlobals(instance);
+            if (in.readInt() != globals.length) {
+                return OptionalInt.empty();
+            }
+            var values = new long[globals.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readLong();
+            }
+            var memory = instance.memory();
+            var pages = in.readInt();
+            if (pages < memory.pages()) {
+                return OptionalInt.empty();
+            }
+
+            modified = true;
+            if (pages > memory.pages() && memory.grow(pages - memory.pages()) == -1) {
+                throw new IllegalStateException(
+                        "Cannot grow memory to " + pages + " pages to restore " + file);
+            }
+            var chunk = new byte[CHUNK];
+            for (int offset = 0; offset < Memory.bytes(pages); offset += CHUNK) {
+                if (in.readBoolean()) {
+                    in.readFully(chunk);
+                    memory.write(offset, chunk, 0, CHUNK);
+                } else {
+                    memory.fill((byte) 0, offset, offset + CHUNK);
+                }
+            }
+            for (int i = 0; i < globals.length; i++) {
+                instance.global(globals[i]).setValue(values[i]);
+            }
+            return OptionalInt.of(exitCode);
+        } catch (IOException e) {
+            if (!modified) {
+                return OptionalInt.empty();
+            }
+            throw new UncheckedIOException("Failed to restore snapshot " + file, e);
+        }
+    }
+
+    static void write(Instance instance, byte[] moduleHash, int exitCode, Path file) {
+        var target = file.toAbsolutePath();
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (var out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(
+                                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(moduleHash);
+                out.writeInt(exitCode);
+                var globals = mutableGlobals(instance);
+                out.writeInt(globals.length);
+                for (var global : globals) {
+                    out.writeLong(instance.global(global).getValue());
+                }
+                var memory = instance.memory();
+                var pages = memory.pages();
+                out.writeInt(pages);
+                for (int offset = 0; offset < Memory.bytes(pages); offset += CHUNK) {
+                    var chunk = memory.readBytes(offset, CHUNK);
+                    var nonZero = !isZero(chunk);
+                    out.writeBoolean(nonZero);
+                    if (nonZero) {
+                        out.write(chunk);
+                    }
+                }
+            }
+            try {
+                Files.move(
+                        tmp,
+                        target,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot " + file, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    private static boolean isZero(byte[] chunk) {
+        for (var b : chunk) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] mutableGlobals(Instance instance) {
+        var module = instance.module();
+        var imported = module.importSection().count(ExternalType.GLOBAL);
+        var section = module.globalSection();
+        var result = new int[section.globalCount()];
+        var count = 0;
+        for (int i = 0; i < section.globalCount(); i++) {
+            if (section.getGlobal(i).mutabilityType() == MutabilityType.Var) {
+                result[count++] = imported + i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,108 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.InterpreterMachine;
+import com.dylibso.chicory.runtime.Machine;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Runs an instance on the interpreter while its module is compiled in the background, then on
+ * the compiled machine: the instance is available right away, without the compile pause of
+ * {@code MachineFactoryCompiler} at startup.
+ *
+ * <p>Both machines work on the same instance state. The compiled machine takes over at a safe
+ * point, when a call enters the guest while no other guest call is running, so no frame of the
+ * interpreter is ever resumed by it. When compilation fails the instance stays on the
+ * interpreter.
+ *
+ * <pre>{@code
+ * var go = Go.builder(module).withWasi().withTieredCompilation().build();
+ * }</pre>
+ */
+public final class TieredMachine implements Machine {
+
+    public enum Tier {
+        INTERPRETER,
+        COMPILED
+    }
+
+    /**
+     * Tiering events: {@code compiled} and {@code failed} are reported on the compiling thread,
+     * {@code switched} on the thread calling into the guest.
+     */
+    public interface Listener {
+        /** The module has been compiled, the instance switches at its next safe point. */
+        default void compiled(Duration compileTime) {}
+
+        /** The instance now runs on the compiled machine. */
+        default void switched(Duration compileTime) {}
+
+        /** Compilation failed, the instance keeps running on the interpreter. */
+        default void failed(Throwable cause) {}
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final Instance instance;
+    private final Function<Instance, Machine> compiler;
+    private final Listener listener;
+    private final CompletableFuture<Duration> compilation = new CompletableFuture<>();
+    // written by the compiling thread, read at safe points
+    private volatile Machine compiled;
+    private volatile Duration compileTime;
+    private Machine current;
+    private Tier tier = Tier.INTERPRETER;
+
+    TieredMachine(Instance instance, Function<Instance, Machine> compiler, Listener listener) {
+        this.instance = instance;
+        this.compiler = compiler;
+        this.listener = (listener != null) ? listener : NO_LISTENER;
+        this.current = new InterpreterMachine(instance);
+    }
+
+    @Override
+    public long[] call(int funcId, long[] args) {
+        return current.call(funcId, args);
+    }
+
+    public Tier tier() {
+        return tier;
+    }
+
+    /** Completes with the compile time once the compiled machine is ready. */
+    public CompletableFuture<Duration> compilation() {
+        return compilation;
+    }
+
+    // called once the instance is fully built
+    void startCompilation(Executor executor) {
+        executor.execute(this::compile);
+    }
+
+    private void compile() {
+        var start = System.nanoTime();
+        try {
+            var machine = compiler.apply(instance);
+            var time = Duration.ofNanos(System.nanoTime() - start);
+            compileTime = time;
+            compiled = machine;
+            listener.compiled(time);
+            compilation.complete(time);
+        } catch (RuntimeException | LinkageError e) {
+            listener.failed(e);
+            compilation.completeExceptionally(e);
+        }
+    }
+
+    // no guest call is running
+    void safePoint() {
+        if (tier == Tier.INTERPRETER && compiled != null) {
+            current = compiled;
+            tier = Tier.COMPILED;
+            listener.switched(compileTime);
+        }
+    }
+}
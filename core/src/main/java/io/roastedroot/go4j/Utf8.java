@@ -0,0 +1,107 @@
+package io.roastedroot.go4j;
+
+import com.dylibso.chicory.runtime.Memory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 transfer of large strings to guest memory through a caller owned scratch buffer, instead
+ * of a {@code byte[]} sized after the whole string. Up to {@link #SCRATCH_SIZE} chars {@code
+ * getBytes(UTF_8)} is faster and its array is small, see {@code StringTransferBenchmark}.
+ */
+final class Utf8 {
+    static final int SCRATCH_SIZE = 8192;
+    /** Set in {@link #measure(String)} when the string has ASCII chars only. */
+    static final long ASCII_ONLY = 1L << 32;
+
+    private final byte[] scratch;
+    // at most 3 bytes per char, a chunk always fits in the scratch buffer
+    private final char[] chars;
+    private final CharBuffer charBuffer;
+    private final ByteBuffer byteBuffer;
+    private final CharsetEncoder encoder =
+            StandardCharsets.UTF_8
+                    .newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    Utf8(byte[] scratch) {
+        this.scratch = scratch;
+        this.chars = new char[scratch.length / 3];
+        this.charBuffer = CharBuffer.wrap(chars);
+        this.byteBuffer = ByteBuffer.wrap(scratch);
+    }
+
+    /**
+     * Number of bytes of the UTF-8 encoding of {@code str}; unpaired surrogates are encoded as
+     * {@code '?'}, as {@code getBytes(UTF_8)} does.
+     */
+    static int encodedLength(String str) {
+        return (int) measure(str);
+    }
+
+    /** {@link #encodedLength(String)}, with {@link #ASCII_ONLY} when it applies. */
+    static long measure(String str) {
+        var length = str.length();
+        var result = length;
+        var ascii = true;
+        var i = 0;
+        while (i < length) {
+            var c = str.charAt(i++);
+            if (c < 0x80) {
+                continue;
+            }
+            ascii = false;
+            if (c < 0x800) {
+                result += 1;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c)
+                        && i < length
+                        && Character.isLowSurrogate(str.charAt(i))) {
+                    // 2 chars, 4 bytes
+                    i++;
+                    result += 2;
+                }
+            } else {
+                result += 2;
+            }
+        }
+        return ascii ? (result | ASCII_ONLY) : result;
+    }
+
+    /** Writes the UTF-8 encoding of {@code str}, {@code measure} is its {@link #measure}. */
+    @SuppressWarnings("deprecation")
+    void write(Memory memory, int ptr, String str, long measure) {
+        var length = str.length();
+        if ((measure & ASCII_ONLY) != 0) {
+            // ASCII only: chars are copied as they are
+            for (int i = 0; i < length; i += scratch.length) {
+                var end = Math.min(length, i + scratch.length);
+                str.getBytes(i, end, scratch, 0);
+                memory.write(ptr + i, scratch, 0, end - i);
+            }
+            return;
+        }
+
+        var offset = ptr;
+        var i = 0;
+        encoder.reset();
+        while (i < length) {
+            var end = Math.min(length, i + chars.length);
+            str.getChars(i, end, chars, 0);
+            charBuffer.clear().limit(end - i);
+            byteBuffer.clear();
+            // a high surrogate ending the chunk stays in charBuffer, for the next one
+            encoder.encode(charBuffer, byteBuffer, end == length);
+            memory.write(offset, scratch, 0, byteBuffer.position());
+            offset += byteBuffer.position();
+            i += charBuffer.position();
+        }
+        byteBuffer.clear();
+        encoder.flush(byteBuffer);
+        memory.write(offset, scratch, 0, byteBuffer.position());
+    }
+}
@@ -0,0 +1,52 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.runtime.WasmRuntimeException;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import org.junit.jupiter.api.Test;
+
+public class DirectMemoryTest {
+    private static final int BOUNDARY = Memory.PAGE_SIZE;
+
+    @Test
+    public void growKeepsContent() {
+        // Arrange
+        var memory = new DirectMemory(new MemoryLimits(1, 8));
+        memory.writeLong(BOUNDARY - 8, 42L);
+
+        // Act
+        var first = memory.grow(1);
+        memory.writeLong(2 * BOUNDARY - 8, 43L);
+        // within the pages reserved by the first growth
+        var second = memory.grow(1);
+
+        // Assert
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals(3, memory.pages());
+        assertEquals(42L, memory.readLong(BOUNDARY - 8));
+        assertEquals(43L, memory.readLong(2 * BOUNDARY - 8));
+        assertEquals(0L, memory.readLong(3 * BOUNDARY - 8));
+        assertThrows(WasmRuntimeException.class, () -> memory.readInt(3 * BOUNDARY - 2));
+        assertThrows(WasmRuntimeException.class, () -> memory.slice(3 * BOUNDARY - 2, 4));
+        assertEquals(-1, memory.grow(6));
+    }
+
+    @Test
+    public void growToMaximum() {
+        // Arrange
+        var memory = new DirectMemory(new MemoryLimits(3, 5));
+
+        // Act
+        var previous = memory.grow(2);
+        memory.writeI32(5 * BOUNDARY - 4, 7);
+
+        // Assert
+        assertEquals(3, previous);
+        assertEquals(7, memory.readInt(5 * BOUNDARY - 4));
+        assertEquals(-1, memory.grow(1));
+    }
+}
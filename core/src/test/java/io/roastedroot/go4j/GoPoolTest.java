@@ -0,0 +1,248 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class GoPoolTest {
+
+    private static WasmModule exportModule() {
+        var wasm = GoPoolTest.class.getResourceAsStream("/wasm/compiled/export-tinygo-wasip1.wasm");
+        return Parser.parse(wasm);
+    }
+
+    @Test
+    public void concurrentLeases() throws Exception {
+        // Arrange
+        var threads = 8;
+        var iterations = 100;
+        var executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        try (var pool =
+                GoPool.builder(exportModule())
+                        .withGoBuilder(Go.Builder::withWasi)
+                        .withInitialSize(2)
+                        .withMaxSize(4)
+                        .build()) {
+            // Act
+            for (int t = 0; t < threads; t++) {
+                var id = t;
+                Callable<Integer> task =
+                        () -> {
+                            var sum = 0;
+                            for (int i = 0; i < iterations; i++) {
+                                var args = new long[] {id, i};
+                                sum += pool.apply(go -> (int) go.exec("add", args)[0]);
+                            }
+                            return sum;
+                        };
+                results.add(executor.submit(task));
+            }
+
+            // Assert
+            for (int t = 0; t < threads; t++) {
+                var expected = t * iterations + (iterations * (iterations - 1)) / 2;
+                assertEquals(expected, (int) results.get(t).get());
+            }
+            var metrics = pool.metrics();
+            assertEquals(threads * iterations, metrics.leases());
+            assertEquals(0, metrics.inUse());
+            assertEquals(0, metrics.timeouts());
+            assertTrue(metrics.size() >= 2 && metrics.size() <= 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void instancesShareOneTemplate() {
+        // Arrange
+        var configured = new AtomicInteger();
+        var template = Go.builder(exportModule()).withWasi().buildModule();
+
+        // Act
+        try (var pool =
+                        GoPool.builder(exportModule())
+                                .withGoBuilder(
+                                        builder -> {
+                                            configured.incrementAndGet();
+                                            builder.withWasi();
+                                        })
+                                .withInitialSize(2)
+                                .build();
+                var templatePool = GoPool.builder(template).withInitialSize(2).build()) {
+
+            // Assert
+            assertEquals(1, configured.get());
+            assertEquals(2, pool.metrics().size());
+            assertEquals(14L, (long) templatePool.apply(go -> go.function("add").call(3, 11)[0]));
+        }
+        assertThrows(
+                IllegalStateException.class,
+                () -> GoPool.builder(template).withGoBuilder(Go.Builder::withWasi).build());
+    }
+
+    @Test
+    public void growsUpToMaxSizeAndTimesOut() {
+        // Arrange
+        try (var pool =
+                GoPool.builder(exportModule())
+                        .withGoBuilder(Go.Builder::withWasi)
+                        .withInitialSize(1)
+                        .withMaxSize(2)
+                        .withGrowAfter(Duration.ZERO)
+                        .withAcquireTimeout(Duration.ofMillis(50))
+                        .build()) {
+
+            // Act
+            try (var first = pool.lease();
+                    var second = pool.lease()) {
+
+                // Assert
+                assertNotSame(first.go(), second.go());
+                assertEquals(2, pool.metrics().size());
+                assertEquals(1, pool.metrics().grown());
+                assertThrows(IllegalStateException.class, pool::lease);
+                assertEquals(1, pool.metrics().timeouts());
+            }
+            assertEquals(0, pool.metrics().inUse());
+        }
+    }
+
+    @Test
+    public void shrinksIdleInstances() throws Exception {
+        // Arrange
+        try (var pool =
+                GoPool.builder(exportModule())
+                        .withGoBuilder(Go.Builder::withWasi)
+                        .withInitialSize(1)
+                        .withMaxSize(2)
+                        .withGrowAfter(Duration.ZERO)
+                        .withIdleTimeout(Duration.ofMillis(1))
+                        .build()) {
+            try (var first = pool.lease();
+                    var second = pool.lease()) {
+                assertEquals(2, pool.metrics().size());
+            }
+            Thread.sleep(10);
+
+            // Act
+            try (var lease = pool.lease()) {
+                lease.go();
+            }
+
+            // Assert
+            assertEquals(1, pool.metrics().size());
+            assertEquals(1, pool.metrics().shrunk());
+        }
+    }
+
+    @Test
+    public void idlePoolShrinks() throws Exception {
+        // Arrange
+        try (var pool =
+                GoPool.builder(exportModule())
+                        .withGoBuilder(Go.Builder::withWasi)
+                        .withInitialSize(1)
+                        .withMaxSize(3)
+                        .withGrowAfter(Duration.ZERO)
+                        .withIdleTimeout(Duration.ofMillis(50))
+                        .build()) {
+            try (var first = pool.lease();
+                    var second = pool.lease();
+                    var third = pool.lease()) {
+                assertEquals(3, pool.metrics().size());
+            }
+
+            // Act: no more leases, only the timer can shrink the pool
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (pool.metrics().size() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // Assert
+            assertEquals(1, pool.metrics().size());
+            assertEquals(2, pool.metrics().shrunk());
+            try (var lease = pool.lease()) {
+                assertEquals(14, (int) lease.go().exec("add", new long[] {3, 11})[0]);
+            }
+        }
+    }
+
+    @Test
+    public void pooledInstancesRestoreASingleSnapshot() throws Exception {
+        // Arrange
+        var wasm =
+                GoPoolTest.class
+                        .getResourceAsStream("/wasm/compiled/export-tinygo-wasip1.wasm")
+                        .readAllBytes();
+        var snapshot = Files.createTempFile("go4j-pool", ".snapshot");
+        Files.delete(snapshot);
+        var metrics = new GoMetricsRegistry();
+
+        // Act
+        try (var pool =
+                GoPool.builder(wasm)
+                        .withGoBuilder(
+                                builder ->
+                                        builder.withWasi()
+                                                .withSnapshot(snapshot)
+                                                .withMetrics(metrics))
+                        .withInitialSize(4)
+                        .build()) {
+
+            // Assert: only the first instance initialized, the others restored its snapshot
+            assertEquals(1, calls(metrics, "_initialize") + calls(metrics, "_start"));
+            assertTrue(Files.exists(snapshot));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(14L, (long) pool.apply(go -> go.function("add").call(3, 11)[0]));
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private static long calls(GoMetricsRegistry metrics, String function) {
+        var histogram = metrics.guestFunctions().get(function);
+        return (histogram != null) ? histogram.count() : 0;
+    }
+
+    @Test
+    public void bindingsAreCachedPerInstance() {
+        // Arrange
+        try (var pool =
+                GoPool.builder(exportModule())
+                        .withGoBuilder(Go.Builder::withWasi)
+                        .withInitialSize(1)
+                        .build()) {
+            Object first;
+            Object second;
+
+            // Act
+            try (var lease = pool.lease()) {
+                first = lease.go().binding(Object.class, go -> new Object());
+            }
+            try (var lease = pool.lease()) {
+                second = lease.go().binding(Object.class, go -> new Object());
+            }
+
+            // Assert
+            assertSame(first, second);
+        }
+    }
+}
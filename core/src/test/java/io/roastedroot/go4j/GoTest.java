@@ -3,20 +3,41 @@ package io.roastedroot.go4j;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.dylibso.chicory.compiler.MachineFactoryCompiler;
 import com.dylibso.chicory.runtime.HostFunction;
 import com.dylibso.chicory.runtime.ImportFunction;
+import com.dylibso.chicory.runtime.WasmFunctionHandle;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasm.Parser;
 import com.dylibso.chicory.wasm.types.FunctionType;
 import com.dylibso.chicory.wasm.types.ValType;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -183,6 +204,228 @@ public class GoTest {
         assertEquals("14", result);
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void functionHandleExample(String mode) {
+        // Arrange
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var go = Go.builder(module).withWasi().build();
+        go.run();
+
+        // Act
+        var add = go.function("add");
+        var first = add.call(3, 11)[0];
+        var second = add.call(5, 7)[0];
+        var resultRef =
+                (int) go.function("update").call(go.allocJavaObj("3"), go.allocJavaObj("11"))[0];
+
+        // Assert
+        assertEquals(14, first);
+        assertEquals(12, second);
+        assertEquals("14", go.getJavaObj(resultRef));
+        assertSame(add, go.function("add"));
+        assertTrue(go.hasFunction("add"));
+        assertFalse(go.hasFunction("missing"));
+        assertThrows(IllegalArgumentException.class, () -> go.function("missing"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void bytesViewExample(String mode) throws Exception {
+        // Arrange
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var go = Go.builder(module).withWasi().withMemoryFactory(DirectMemory::new).build();
+        go.run();
+        var ptr = go.goMalloc(4);
+        go.memory().write(ptr, new byte[] {1, 2, 3, 4});
+
+        // Act
+        var view = go.view(ptr, 4);
+        var buffer = view.asByteBuffer();
+        go.memory().writeByte(ptr, (byte) 42);
+        var out = new ByteArrayOutputStream();
+        view.writeTo(out);
+        view.release();
+
+        // Assert
+        assertEquals(42, buffer.get(0));
+        assertTrue(buffer.isReadOnly());
+        assertArrayEquals(new byte[] {42, 2, 3, 4}, out.toByteArray());
+        assertThrows(IllegalStateException.class, view::toByteArray);
+        assertThrows(IllegalArgumentException.class, () -> go.view(-1, 4));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 64, Go.DEFAULT_TRANSFER_ARENA_SIZE})
+    public void transferArenaFallbackExample(int arenaSize) {
+        // Arrange
+        var wasm =
+                GoTest.class.getResourceAsStream(
+                        "/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var metrics = new GoMetricsRegistry();
+        var go =
+                Go.builder(module)
+                        .withWasi()
+                        .withTransferArena(arenaSize)
+                        .withMetrics(metrics)
+                        .build();
+        go.run();
+        var update = go.function("update");
+
+        // Act & Assert - the committed modules predate wasm_reserve_arena, every value
+        // falls back to wasm_malloc
+        for (int i = 0; i < 1_000; i++) {
+            var padding = "0".repeat(i % 100);
+            var aRef = go.allocJavaObj(padding + i);
+            var bRef = go.allocJavaObj(padding + "1");
+            var resultRef = (int) update.call(aRef, bRef)[0];
+
+            assertEquals(String.valueOf(i + 1), go.getJavaObj(resultRef));
+            go.freeJavaObj(aRef);
+            go.freeJavaObj(bRef);
+            go.freeJavaObj(resultRef);
+        }
+
+        // Assert
+        var mallocs = calls(metrics, "wasm_malloc") + calls(metrics, "wasm_malloc_nozero");
+        assertEquals(2_000, mallocs);
+        assertEquals(0, calls(metrics, "wasm_reserve_arena"));
+    }
+
+    private static long calls(GoMetricsRegistry metrics, String function) {
+        var histogram = metrics.guestFunctions().get(function);
+        return (histogram != null) ? histogram.count() : 0;
+    }
+
+    @Test
+    public void internJavaObjExample() {
+        // Arrange
+        var wasm =
+                GoTest.class.getResourceAsStream(
+                        "/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm");
+        var go = Go.builder(Parser.parse(wasm)).withWasi().build();
+        go.run();
+        var value = "3";
+        var liveBefore = go.refStore().liveCount();
+
+        // Act
+        var first = go.internJavaObj(value);
+        var second = go.internJavaObj(value);
+        var scoped = go.withRefScope(() -> go.allocJavaObj(value));
+        go.freeJavaObj(first);
+        var result = (int) go.exec("update", new long[] {second, second})[0];
+        go.freeJavaObj(second);
+        var third = go.internJavaObj(value);
+
+        // Assert
+        assertEquals(first, second);
+        assertNotEquals(first, scoped);
+        assertEquals("6", go.takeJavaObj(result));
+        assertNotEquals(first, third);
+        assertEquals(value, go.getJavaObj(third));
+        go.freeJavaObj(third);
+        assertEquals(liveBefore, go.refStore().liveCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void refScopeExample(String mode) {
+        // Arrange
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var go = Go.builder(module).withWasi().build();
+        go.run();
+        var liveBefore = go.refStore().liveCount();
+
+        // Act
+        var kept = new AtomicInteger();
+        var result =
+                go.withRefScope(
+                        () -> {
+                            var aRef = go.allocJavaObj("3");
+                            var bRef = go.allocJavaObj("11");
+                            var resultRef = (int) go.exec("update", new long[] {aRef, bRef})[0];
+                            kept.set(go.promoteRef(go.allocJavaObj("kept")));
+                            return go.getJavaObj(resultRef);
+                        });
+
+        // Assert
+        assertEquals("14", result);
+        assertEquals(liveBefore + 1, go.refStore().liveCount());
+        assertEquals("kept", go.getJavaObj(kept.get()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void snapshotExample(String mode) throws IOException {
+        // Arrange
+        var wasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm")
+                        .readAllBytes();
+        var snapshot = Files.createTempFile("go4j-export-" + mode, ".snapshot");
+        Files.delete(snapshot);
+
+        try {
+            var first = Go.builder(wasm).withWasi().withSnapshot(snapshot).build();
+            var firstExit = first.run();
+            assertTrue(Files.exists(snapshot));
+
+            // Act
+            var second = Go.builder(wasm).withWasi().withSnapshot(snapshot).build();
+            var secondExit = second.run();
+            var aRef = second.allocJavaObj("3");
+            var bRef = second.allocJavaObj("11");
+            var resultRef = (int) second.exec("update", new long[] {aRef, bRef})[0];
+
+            // Assert
+            assertEquals(firstExit, secondExit);
+            assertEquals("14", second.getJavaObj(resultRef));
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    @Test
+    public void staleSnapshotIsRecreated() throws IOException {
+        // Arrange
+        var tinygoWasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        var goWasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + GO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        var snapshot = Files.createTempFile("go4j-stale", ".snapshot");
+        Files.delete(snapshot);
+
+        try {
+            Go.builder(tinygoWasm).withWasi().withSnapshot(snapshot).build().run();
+            var stale = Files.readAllBytes(snapshot);
+
+            // Act
+            var go = Go.builder(goWasm).withWasi().withSnapshot(snapshot).build();
+            go.run();
+            var aRef = go.allocJavaObj("3");
+            var bRef = go.allocJavaObj("11");
+            var resultRef = (int) go.exec("update", new long[] {aRef, bRef})[0];
+
+            // Assert
+            assertEquals("14", go.getJavaObj(resultRef));
+            assertFalse(Arrays.equals(stale, Files.readAllBytes(snapshot)));
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
     public void exportWasiRuntimeCompilerExample(String mode) {
@@ -207,6 +450,258 @@ public class GoTest {
         assertEquals("14", result);
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void tieredCompilationExample(String mode) throws Exception {
+        // Arrange
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+        var switched = new AtomicInteger();
+        var go =
+                Go.builder(module)
+                        .withWasi()
+                        .withNoCompiledMachineLookup()
+                        .withTieredCompilation(
+                                new TieredMachine.Listener() {
+                                    @Override
+                                    public void switched(Duration compileTime) {
+                                        switched.incrementAndGet();
+                                    }
+                                })
+                        .build();
+        var tiered = go.tieredMachine().orElseThrow();
+
+        // Act
+        go.run();
+        var interpreted = go.function("add").call(3, 11)[0];
+        var compileTime = tiered.compilation().get(5, TimeUnit.MINUTES);
+        var compiled = go.function("add").call(3, 11)[0];
+
+        // Assert
+        assertEquals(14, interpreted);
+        assertEquals(14, compiled);
+        assertTrue(compileTime.toNanos() > 0);
+        assertEquals(TieredMachine.Tier.COMPILED, tiered.tier());
+        assertEquals(1, switched.get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void goModuleExample(String mode) throws IOException {
+        // Arrange
+        var wasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + mode + ".wasm")
+                        .readAllBytes();
+        var template = Go.builder(wasm).withWasi().buildModule();
+
+        // Act
+        var first = template.newInstance();
+        var second = template.newInstance();
+        first.run();
+        second.run();
+        var liveBefore = second.refStore().liveCount();
+        var aRef = first.allocJavaObj("3");
+        var bRef = first.allocJavaObj("11");
+        var resultRef = (int) first.exec("update", new long[] {aRef, bRef})[0];
+
+        // Assert
+        assertEquals("14", first.getJavaObj(resultRef));
+        assertEquals(liveBefore, second.refStore().liveCount());
+        assertEquals(14, second.function("add").call(3, 11)[0]);
+        // every instance gets its own WASI file descriptors
+        assertNotSame(template.wasi.get()[0], template.wasi.get()[0]);
+    }
+
+    @Test
+    public void profileGuidedCompilationExample(@TempDir Path dir) throws Exception {
+        // Arrange
+        var wasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/withdep-" + TINYGO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        var expectedResult = GoTest.class.getResourceAsStream("/qrcode.png").readAllBytes();
+        var profiled = Go.builder(wasm).withWasi().withProfiling().build();
+        profiled.run();
+        profiled.exec("genqr", new long[] {profiled.allocJavaObj("https://chicory.dev")});
+        var file = dir.resolve("withdep.profile");
+
+        // Act
+        var profile = profiled.profile().orElseThrow();
+        profile.write(file);
+        var cold = GoProfile.readColdFunctions(file);
+        var go =
+                Go.builder(wasm)
+                        .withWasi()
+                        .withTieredCompilation()
+                        .withInterpretedFunctions(cold)
+                        .build();
+        go.run();
+        go.tieredMachine().orElseThrow().compilation().get(5, TimeUnit.MINUTES);
+        var url = go.allocJavaObj("https://chicory.dev");
+        var resultRef = (int) go.exec("genqr", new long[] {url})[0];
+
+        // Assert
+        assertFalse(profile.hotFunctions().isEmpty());
+        assertFalse(cold.isEmpty());
+        assertEquals(profile.coldFunctions(), cold);
+        assertTrue(profile.hotFunctions().stream().noneMatch(cold::contains));
+        assertEquals(TieredMachine.Tier.COMPILED, go.tieredMachine().orElseThrow().tier());
+        assertArrayEquals(expectedResult, (byte[]) go.getJavaObj(resultRef));
+        assertThrows(
+                IllegalStateException.class,
+                () -> Go.builder(wasm).withProfiling().withTieredCompilation().build());
+    }
+
+    @Test
+    public void metricsExample() {
+        // Arrange
+        var wasm =
+                GoTest.class.getResourceAsStream(
+                        "/wasm/compiled/datatypes-" + TINYGO_WASIP1 + ".wasm");
+        var metrics = new GoMetricsRegistry();
+        var go = Go.builder(Parser.parse(wasm)).withWasi().withMetrics(metrics).build();
+        go.run();
+
+        // Act
+        var in = go.allocJavaObj("hello");
+        var out = (int) go.exec("roundtripString", new long[] {in})[0];
+        go.function("roundtripString").call(in);
+
+        // Assert
+        assertEquals("hello", go.getJavaObj(out));
+        var calls = metrics.guestFunctions().get("roundtripString");
+        assertEquals(2, calls.count());
+        assertTrue(calls.totalNanos() > 0);
+        assertTrue(calls.percentileNanos(0.5) <= calls.maxNanos());
+        assertEquals(2, metrics.hostFunctions().get("env.asGoString").count());
+        assertEquals(2, metrics.hostFunctions().get("env.setJavaString").count());
+        assertEquals(10, metrics.totalTransferredBytes("asGoString"));
+        assertEquals(10, metrics.totalTransferredBytes("setJavaString"));
+    }
+
+    @Test
+    public void compilationCacheExample(@TempDir Path cache) throws IOException {
+        // Arrange
+        var wasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        var cold = Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+        cold.run();
+        Path entry;
+        try (var entries = Files.list(cache)) {
+            entry = entries.findFirst().orElseThrow();
+        }
+        var written = Files.readAllBytes(entry);
+
+        // Act
+        var cached = Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+        cached.run();
+        Files.write(entry, new byte[] {1, 2, 3});
+        var recompiled = Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+        recompiled.run();
+
+        // Assert
+        assertEquals(14, cold.function("add").call(3, 11)[0]);
+        assertEquals(14, cached.function("add").call(3, 11)[0]);
+        assertEquals(14, recompiled.function("add").call(3, 11)[0]);
+        try (var entries = Files.list(cache)) {
+            assertEquals(1, entries.count());
+        }
+        assertTrue(Files.readAllBytes(entry).length > 3);
+        assertTrue(written.length > 3);
+    }
+
+    @Test
+    public void compilationCacheRejectsBrokenClasses(@TempDir Path cache) throws IOException {
+        // Arrange
+        var wasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        Go.builder(wasm).withWasi().withCompilationCache(cache).build().run();
+        Path entry;
+        try (var entries = Files.list(cache)) {
+            entry = entries.findFirst().orElseThrow();
+        }
+        // a well-formed entry whose helper classes don't verify: they only load when first used
+        var broken = new ByteArrayOutputStream();
+        try (var in = new DataInputStream(new GZIPInputStream(Files.newInputStream(entry)));
+                var out = new DataOutputStream(new GZIPOutputStream(broken))) {
+            out.writeInt(in.readInt());
+            out.writeInt(in.readInt());
+            out.write(in.readNBytes(32));
+            out.writeUTF(in.readUTF());
+            var count = in.readInt();
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                var name = in.readUTF();
+                var bytes = in.readNBytes(in.readInt());
+                if (!name.endsWith("Machine")) {
+                    Arrays.fill(bytes, 8, bytes.length, (byte) 0);
+                }
+                out.writeUTF(name);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.write(entry, broken.toByteArray());
+
+        // Act
+        var recompiled = Go.builder(wasm).withWasi().withCompilationCache(cache).build();
+        recompiled.run();
+
+        // Assert
+        assertEquals(14, recompiled.function("add").call(3, 11)[0]);
+        assertFalse(Arrays.equals(broken.toByteArray(), Files.readAllBytes(entry)));
+    }
+
+    @Test
+    public void compiledMachineProviderExample() throws IOException {
+        // Arrange
+        var tinygoWasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + TINYGO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        var goWasm =
+                GoTest.class
+                        .getResourceAsStream("/wasm/compiled/export-" + GO_WASIP1 + ".wasm")
+                        .readAllBytes();
+        // a custom section named "go4j" with 3 bytes of content
+        var withCustomSection = Arrays.copyOf(tinygoWasm, tinygoWasm.length + 10);
+        System.arraycopy(
+                new byte[] {0, 8, 4, 'g', 'o', '4', 'j', 1, 2, 3},
+                0,
+                withCustomSection,
+                tinygoWasm.length,
+                10);
+
+        // Act
+        var provider = CompiledMachines.lookup(tinygoWasm);
+        var fromBytes = Go.builder(tinygoWasm).withWasi().build();
+        var fromModule = Go.builder(Parser.parse(tinygoWasm)).withWasi().build();
+        var stripped = Go.builder(withCustomSection).withWasi().build();
+        var interpreted = Go.builder(tinygoWasm).withWasi().withNoCompiledMachineLookup().build();
+        var unregistered = Go.builder(goWasm).withWasi().build();
+        fromBytes.run();
+        fromModule.run();
+        stripped.run();
+        interpreted.run();
+        unregistered.run();
+
+        // Assert
+        assertInstanceOf(ExportTinygoWasiProvider.class, provider);
+        assertEquals(CompiledMachineProvider.moduleHash(tinygoWasm), provider.moduleHash());
+        assertSame(provider, CompiledMachines.lookup(withCustomSection));
+        assertNull(CompiledMachines.lookup(goWasm));
+        assertEquals(14, fromBytes.function("add").call(3, 11)[0]);
+        assertEquals(14, fromModule.function("add").call(3, 11)[0]);
+        assertEquals(14, stripped.function("add").call(3, 11)[0]);
+        assertEquals(14, interpreted.function("add").call(3, 11)[0]);
+        assertEquals(14, unregistered.function("add").call(3, 11)[0]);
+    }
+
     @Test
     public void exportTinyGoWasiBuildTimeCompilerExample() {
         // Arrange
@@ -287,6 +782,53 @@ public class GoTest {
         assertArrayEquals(expectedResult, result);
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void directMemoryExample(String mode) throws Exception {
+        // Arrange
+        var expectedResult = GoTest.class.getResourceAsStream("/qrcode.png").readAllBytes();
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/withdep-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var go = Go.builder(module).withWasi().withMemoryFactory(DirectMemory::new).build();
+
+        // Act
+        go.run();
+        var url = go.allocJavaObj("https://chicory.dev");
+        var resultRef = (int) go.exec("genqr", new long[] {url})[0];
+        var result = (byte[]) go.getJavaObj(resultRef);
+
+        // Assert
+        assertInstanceOf(DirectMemory.class, go.memory());
+        assertArrayEquals(expectedResult, result);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
+    public void segmentedMemoryExample(String mode) throws Exception {
+        // Arrange
+        var expectedResult = GoTest.class.getResourceAsStream("/qrcode.png").readAllBytes();
+        var wasm = GoTest.class.getResourceAsStream("/wasm/compiled/withdep-" + mode + ".wasm");
+        var module = Parser.parse(wasm);
+
+        var go =
+                Go.builder(module)
+                        .withWasi()
+                        .withMemoryFactory(limits -> new SegmentedMemory(limits, 1))
+                        .withInitialMemoryPages(64)
+                        .build();
+
+        // Act
+        go.run();
+        var url = go.allocJavaObj("https://chicory.dev");
+        var resultRef = (int) go.exec("genqr", new long[] {url})[0];
+        var result = (byte[]) go.getJavaObj(resultRef);
+
+        // Assert
+        assertTrue(go.memoryPages() >= 64);
+        assertArrayEquals(expectedResult, result);
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {TINYGO_WASIP1, GO_WASIP1})
     public void datatypesExample(String mode) {
@@ -347,4 +889,65 @@ public class GoTest {
         var outB = (boolean) go.getJavaObj(outBRef);
         assertTrue(outB);
     }
+
+    @Test
+    public void defaultImportsDoNotAllocate() {
+        // Arrange
+        var wasm =
+                GoTest.class.getResourceAsStream(
+                        "/wasm/compiled/datatypes-" + TINYGO_WASIP1 + ".wasm");
+        var go = Go.builder(Parser.parse(wasm)).withWasi().build();
+        go.run();
+        var argsByName =
+                Map.of(
+                        "allocJava", new long[0],
+                        "asGoUint32", new long[] {go.allocJavaInt(7)},
+                        "asGoUint64", new long[] {go.allocJavaLong(7L)},
+                        "asGoFloat32", new long[] {go.allocJavaFloat(1.5f)},
+                        "asGoFloat64", new long[] {go.allocJavaDouble(3.25d)},
+                        "asGoBool", new long[] {go.allocJavaBool(true)});
+        var names = new ArrayList<String>();
+        var handles = new ArrayList<WasmFunctionHandle>();
+        var args = new ArrayList<long[]>();
+        for (var function : Go.defaultImports(go)) {
+            if (argsByName.containsKey(function.name())) {
+                names.add(function.name());
+                handles.add(((HostFunction) function).handle());
+                args.add(argsByName.get(function.name()));
+            }
+        }
+        assertEquals(argsByName.size(), handles.size());
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().getId();
+        var iterations = 10_000;
+        var results = new long[handles.size()];
+        for (int i = 0; i < iterations; i++) {
+            callAll(go, handles, args, results);
+        }
+
+        // Act
+        var start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            callAll(go, handles, args, results);
+        }
+        var allocated = threads.getThreadAllocatedBytes(threadId) - start;
+
+        // Assert
+        assertTrue(
+                allocated < iterations,
+                "default imports allocated " + allocated + " bytes in " + iterations + " rounds");
+        assertEquals(7, results[names.indexOf("asGoUint32")]);
+        assertEquals(1, results[names.indexOf("asGoBool")]);
+    }
+
+    // calls every handle once, freeing the refs allocated by allocJava
+    private static void callAll(
+            Go go, List<WasmFunctionHandle> handles, List<long[]> args, long[] results) {
+        for (int i = 0; i < handles.size(); i++) {
+            results[i] = handles.get(i).apply(null, args.get(i))[0];
+            if (args.get(i).length == 0) {
+                go.freeJavaObj((int) results[i]);
+            }
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        // Arrange
+        var histogram = new LatencyHistogram();
+
+        // Act
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(10_000);
+        }
+
+        // Assert
+        assertEquals(100, histogram.count());
+        assertEquals(90 * 100 + 10 * 10_000, histogram.totalNanos());
+        assertEquals(10_000, histogram.maxNanos());
+        assertEquals(127, histogram.percentileNanos(0.5));
+        assertEquals(127, histogram.percentileNanos(0.8));
+        assertEquals(10_000, histogram.percentileNanos(0.99));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(1.5));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        // Arrange
+        var histogram = new LatencyHistogram();
+        var threads = 4;
+        var perThread = 100_000;
+        var start = new CountDownLatch(1);
+        var workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            var offset = t;
+            var worker =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    return;
+                                }
+                                for (int i = 0; i < perThread; i++) {
+                                    histogram.record(i % 1000 + offset);
+                                }
+                            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        // Act
+        start.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        // Assert
+        assertEquals((long) threads * perThread, histogram.count());
+        assertEquals(999 + threads - 1, histogram.maxNanos());
+        assertTrue(histogram.percentileNanos(1) >= histogram.percentileNanos(0.5));
+    }
+}
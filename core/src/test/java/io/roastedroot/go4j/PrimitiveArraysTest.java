@@ -0,0 +1,65 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class PrimitiveArraysTest {
+
+    private static Memory memory(String kind) {
+        var limits = new MemoryLimits(2, 2);
+        return kind.equals("direct") ? new DirectMemory(limits) : new ByteArrayMemory(limits);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"array", "direct"})
+    public void littleEndianLayout(String kind) {
+        // Arrange
+        var memory = memory(kind);
+
+        // Act
+        PrimitiveArrays.write(memory, 4, new int[] {0x01020304, -1}, new byte[16]);
+        PrimitiveArrays.write(memory, 16, new double[] {1.5d}, new byte[16]);
+
+        // Assert
+        assertEquals(0x04, memory.read(4));
+        assertEquals(0x01020304, memory.readInt(4));
+        assertEquals(-1, memory.readInt(8));
+        assertEquals(1.5d, memory.readDouble(16));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"array", "direct"})
+    public void roundtripLargerThanScratch(String kind) {
+        // Arrange
+        var memory = memory(kind);
+        var scratch = new byte[64];
+        var ints = new int[100];
+        var longs = new long[100];
+        var floats = new float[100];
+        var doubles = new double[100];
+        for (int i = 0; i < 100; i++) {
+            ints[i] = i * 31 - 1000;
+            longs[i] = (long) i << 40;
+            floats[i] = i / 3f;
+            doubles[i] = -i / 7d;
+        }
+
+        // Act
+        PrimitiveArrays.write(memory, 0, ints, scratch);
+        PrimitiveArrays.write(memory, 1000, longs, scratch);
+        PrimitiveArrays.write(memory, 2000, floats, scratch);
+        PrimitiveArrays.write(memory, 3000, doubles, scratch);
+
+        // Assert
+        assertArrayEquals(ints, PrimitiveArrays.readInts(memory, 0, 100));
+        assertArrayEquals(longs, PrimitiveArrays.readLongs(memory, 1000, 100));
+        assertArrayEquals(floats, PrimitiveArrays.readFloats(memory, 2000, 100));
+        assertArrayEquals(doubles, PrimitiveArrays.readDoubles(memory, 3000, 100));
+    }
+}
@@ -0,0 +1,326 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class RefStoreTest {
+
+    @Test
+    public void registerGetSetFree() {
+        // Arrange
+        var refs = new RefStore();
+
+        // Act
+        var ref = refs.registerRef("foo");
+        var nullRef = refs.registerRef(null);
+        refs.set(nullRef, "bar");
+
+        // Assert
+        assertNotEquals(0, ref);
+        assertEquals("foo", refs.get(ref));
+        assertEquals("bar", refs.get(nullRef));
+
+        refs.free(ref);
+        refs.set(nullRef, null);
+        assertNull(refs.get(nullRef));
+    }
+
+    @Test
+    public void staleRefIsRejected() {
+        // Arrange
+        var refs = new RefStore();
+        var stale = refs.registerRef("first");
+        refs.free(stale);
+
+        // Act
+        var recycled = refs.registerRef("second");
+
+        // Assert
+        assertNotEquals(stale, recycled);
+        assertEquals("second", refs.get(recycled));
+        assertThrows(IllegalStateException.class, () -> refs.get(stale));
+        assertThrows(IllegalStateException.class, () -> refs.set(stale, "oops"));
+        assertThrows(IllegalStateException.class, () -> refs.free(stale));
+        assertThrows(IllegalStateException.class, () -> refs.get(0));
+    }
+
+    @Test
+    public void internedRefIsReleasedByItsLastOwner() {
+        // Arrange
+        var refs = new RefStore();
+        var ref = refs.registerInterned("shared");
+        var plain = refs.registerRef("plain");
+
+        // Act
+        refs.retain(ref);
+        refs.setInterned(ref, "replaced");
+        var first = refs.disown(ref);
+        var stillLive = refs.get(ref);
+        var last = refs.disown(ref);
+
+        // Assert
+        assertFalse(refs.isInterned(plain));
+        assertFalse(first);
+        assertEquals("replaced", stillLive);
+        assertTrue(last);
+        assertThrows(IllegalStateException.class, () -> refs.get(ref));
+        assertThrows(IllegalStateException.class, () -> refs.retain(plain));
+        assertEquals(1, refs.liveCount());
+    }
+
+    @Test
+    public void internedRefOnlyHoldsObjects() {
+        // Arrange
+        var refs = new RefStore();
+        var ref = refs.registerInterned("shared");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> refs.setInt(ref, 1));
+        assertThrows(IllegalStateException.class, () -> refs.set(ref, "other"));
+        assertEquals("shared", refs.get(ref));
+    }
+
+    @Test
+    public void shrinksAfterBurst() {
+        // Arrange
+        var refs = new RefStore(0.25);
+        var burst = new int[1024];
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = refs.registerRef(i);
+        }
+        var peakCapacity = refs.capacity();
+
+        // Act
+        for (int i = burst.length - 1; i >= 8; i--) {
+            refs.free(burst[i]);
+        }
+
+        // Assert
+        assertTrue(peakCapacity >= 1024);
+        assertTrue(refs.capacity() < peakCapacity);
+        assertEquals(8, refs.liveCount());
+        assertEquals(1024, refs.highWaterMark());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, refs.get(burst[i]));
+        }
+        assertThrows(IllegalStateException.class, () -> refs.get(burst[1000]));
+
+        var ref = refs.registerRef("after");
+        assertEquals("after", refs.get(ref));
+    }
+
+    @Test
+    public void shrinksAtConfiguredThreshold() {
+        // Arrange
+        var refs = new RefStore(1, 0.5);
+        var burst = new int[64];
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = refs.registerRef(i);
+        }
+
+        // Act
+        for (int i = burst.length - 1; i >= 32; i--) {
+            refs.free(burst[i]);
+        }
+
+        // Assert
+        assertEquals(64, refs.highWaterMark());
+        assertEquals(32, refs.capacity());
+        for (int i = 0; i < 32; i++) {
+            assertEquals(i, refs.get(burst[i]));
+        }
+        var ref = refs.registerRef("after");
+        assertEquals(64, refs.capacity());
+        assertEquals("after", refs.get(ref));
+    }
+
+    @Test
+    public void primitiveSlots() {
+        // Arrange
+        var refs = new RefStore();
+
+        // Act
+        var intRef = refs.registerInt(42);
+        var longRef = refs.registerLong(Long.MAX_VALUE);
+        var floatRef = refs.registerFloat(1.5f);
+        var doubleRef = refs.registerDouble(3.25d);
+        var boolRef = refs.registerBool(true);
+        var boxedRef = refs.registerRef(7L);
+
+        // Assert
+        assertEquals(42, refs.getInt(intRef));
+        assertEquals(Long.MAX_VALUE, refs.getLong(longRef));
+        assertEquals(1.5f, refs.getFloat(floatRef));
+        assertEquals(3.25d, refs.getDouble(doubleRef));
+        assertTrue(refs.getBool(boolRef));
+        assertEquals(7L, refs.getLong(boxedRef));
+
+        // boxed views are still available
+        assertEquals(42, refs.get(intRef));
+        assertEquals(Long.MAX_VALUE, refs.get(longRef));
+        assertEquals(true, refs.get(boolRef));
+
+        // a slot can switch between primitive and object values
+        refs.setDouble(intRef, 0.5d);
+        assertEquals(0.5d, refs.getDouble(intRef));
+        refs.set(intRef, "foo");
+        assertEquals("foo", refs.get(intRef));
+        assertThrows(ClassCastException.class, () -> refs.getLong(intRef));
+    }
+
+    @Test
+    public void instancesAreIndependent() {
+        // Arrange
+        var first = new RefStore();
+        var second = new RefStore();
+
+        // Act
+        var ref = first.registerRef("foo");
+
+        // Assert
+        assertThrows(IllegalStateException.class, () -> second.get(ref));
+    }
+
+    @Test
+    public void staleRefIsRejectedAcrossResizes() {
+        // Arrange
+        var refs = new RefStore(0.25);
+        var stale = new ArrayList<Integer>();
+        for (int round = 0; round < 64; round++) {
+            var burst = new int[256 + round];
+            for (int i = 0; i < burst.length; i++) {
+                burst[i] = refs.registerRef(i);
+            }
+            for (int i = burst.length - 1; i >= 0; i--) {
+                refs.free(burst[i]);
+                stale.add(burst[i]);
+            }
+        }
+
+        // Act
+        var live = new ArrayList<Integer>();
+        for (int i = 0; i < 1024; i++) {
+            live.add(refs.registerRef("live" + i));
+        }
+
+        // Assert
+        for (var ref : stale) {
+            assertTrue(ref > 0);
+            assertFalse(live.contains(ref));
+            assertFalse(refs.release(ref));
+        }
+        for (int i = 0; i < live.size(); i++) {
+            assertEquals("live" + i, refs.get(live.get(i)));
+        }
+    }
+
+    @Test
+    public void handlesStayPositive() {
+        // Arrange
+        var refs = new RefStore();
+        var ref = refs.registerRef("first");
+
+        // Act
+        for (int i = 0; i < 1_000_000; i++) {
+            refs.free(ref);
+            ref = refs.registerRef(i);
+            assertTrue(ref > 0);
+        }
+
+        // Assert
+        assertEquals(999_999, refs.get(ref));
+        assertEquals(1, refs.liveCount());
+    }
+
+    @Test
+    public void sharedAcrossThreads() throws Exception {
+        // Arrange
+        var refs = new RefStore(8, RefStore.DEFAULT_SHRINK_THRESHOLD);
+        var threads = 16;
+        var iterations = 200;
+        var start = new CountDownLatch(1);
+        var failures = new ArrayList<Throwable>();
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            var id = t;
+            var worker =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                    // bursts grow and shrink the stripes
+                                    var burst = new int[64];
+                                    for (int i = 0; i < iterations; i++) {
+                                        for (int j = 0; j < burst.length; j++) {
+                                            burst[j] = refs.registerRef(id + ":" + i + ":" + j);
+                                        }
+                                        for (int j = 0; j < burst.length; j++) {
+                                            assertEquals(
+                                                    id + ":" + i + ":" + j, refs.get(burst[j]));
+                                            refs.free(burst[j]);
+                                        }
+                                    }
+                                } catch (Throwable e) {
+                                    synchronized (failures) {
+                                        failures.add(e);
+                                    }
+                                }
+                            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        // Act
+        start.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        // Assert
+        assertEquals(List.of(), failures);
+        assertEquals(0, refs.liveCount());
+    }
+
+    @Test
+    public void freedByAnotherThread() throws Exception {
+        // Arrange
+        var refs = new RefStore(8, RefStore.DEFAULT_SHRINK_THRESHOLD);
+        var registered = new int[1000];
+        for (int i = 0; i < registered.length; i++) {
+            registered[i] = refs.registerRef(i);
+        }
+        var failures = new ArrayList<Throwable>();
+
+        // Act
+        var worker =
+                new Thread(
+                        () -> {
+                            try {
+                                for (int i = 0; i < registered.length; i++) {
+                                    assertEquals(i, refs.get(registered[i]));
+                                    refs.free(registered[i]);
+                                }
+                            } catch (Throwable e) {
+                                failures.add(e);
+                            }
+                        });
+        worker.start();
+        worker.join();
+
+        // Assert
+        assertEquals(List.of(), failures);
+        assertEquals(0, refs.liveCount());
+        assertThrows(IllegalStateException.class, () -> refs.get(registered[0]));
+        assertFalse(refs.release(registered[999]));
+    }
+}
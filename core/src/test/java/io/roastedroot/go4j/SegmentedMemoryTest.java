@@ -0,0 +1,148 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.ChicoryException;
+import com.dylibso.chicory.runtime.WasmRuntimeException;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class SegmentedMemoryTest {
+    private static final int BOUNDARY = Memory.PAGE_SIZE;
+
+    private static SegmentedMemory memory(int initial, int maximum) {
+        // one page per segment, to cross segments at every page boundary
+        return new SegmentedMemory(new MemoryLimits(initial, maximum), 1);
+    }
+
+    @Test
+    public void accessesAcrossSegments() {
+        // Arrange
+        var memory = memory(2, 2);
+
+        // Act
+        memory.writeLong(BOUNDARY - 3, 0x0102030405060708L);
+        memory.writeI32(BOUNDARY - 1, 0x0a0b0c0d);
+        memory.writeShort(BOUNDARY + 10 - 1, (short) 0x7f01);
+
+        // Assert
+        assertEquals(0x08, memory.read(BOUNDARY - 3));
+        assertEquals(0x0a0b0c0d, memory.readInt(BOUNDARY - 1));
+        assertEquals(0x0c0d0708, memory.readInt(BOUNDARY - 3));
+        assertEquals(0x7f01, memory.readShort(BOUNDARY + 9));
+        assertEquals(0x7f01, memory.readU16(BOUNDARY + 9));
+        assertArrayEquals(new byte[] {8, 7, 0x0d, 0x0c}, memory.readBytes(BOUNDARY - 3, 4));
+    }
+
+    @Test
+    public void growKeepsContent() {
+        // Arrange
+        var memory = memory(1, 4);
+        memory.writeLong(BOUNDARY - 8, 42L);
+
+        // Act
+        var previous = memory.grow(2);
+
+        // Assert
+        assertEquals(1, previous);
+        assertEquals(3, memory.pages());
+        assertEquals(42L, memory.readLong(BOUNDARY - 8));
+        assertEquals(0L, memory.readLong(3 * BOUNDARY - 8));
+        assertEquals(-1, memory.grow(2));
+        assertThrows(WasmRuntimeException.class, () -> memory.readInt(3 * BOUNDARY - 2));
+    }
+
+    @Test
+    public void overlappingCopies() {
+        // Arrange
+        var memory = memory(3, 3);
+        var data = new byte[BOUNDARY + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        memory.write(50, data);
+
+        // Act
+        memory.copy(70, 50, data.length);
+        var forward = memory.readBytes(70, data.length);
+        memory.copy(30, 70, data.length);
+
+        // Assert
+        assertArrayEquals(data, forward);
+        assertArrayEquals(data, memory.readBytes(30, data.length));
+    }
+
+    @Test
+    public void fillAcrossSegments() {
+        // Arrange
+        var memory = memory(2, 2);
+
+        // Act
+        memory.fill((byte) 7, BOUNDARY - 2, BOUNDARY + 2);
+
+        // Assert
+        assertArrayEquals(new byte[] {0, 7, 7, 7, 7, 0}, memory.readBytes(BOUNDARY - 3, 6));
+    }
+
+    @Test
+    public void unsharedMemoryDoesNotWait() {
+        // Arrange
+        var memory = memory(1, 1);
+
+        // Act
+        var notified = memory.notify(0, 1);
+
+        // Assert
+        assertFalse(memory.shared());
+        assertNotSame(memory.lock(0), memory.lock(0));
+        assertEquals(0, notified);
+        assertThrows(ChicoryException.class, () -> memory.waitOn(0, 0, 0L));
+    }
+
+    @Test
+    public void waitOnSharedMemory() {
+        // Arrange
+        var memory = new SegmentedMemory(new MemoryLimits(2, 2, true), 1);
+        memory.writeI32(BOUNDARY, 5);
+        memory.writeLong(8, 6L);
+
+        // Act
+        var notEqual = memory.waitOn(BOUNDARY, 4, -1L);
+        var timedOut = memory.waitOn(8, 6L, TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Assert
+        assertTrue(memory.shared());
+        assertSame(memory.lock(BOUNDARY), memory.lock(BOUNDARY));
+        assertEquals(1, notEqual);
+        assertEquals(2, timedOut);
+        assertEquals(0, memory.notify(BOUNDARY, 1));
+    }
+
+    @Test
+    public void notifyWakesWaiters() throws Exception {
+        // Arrange
+        var memory = new SegmentedMemory(new MemoryLimits(1, 1, true), 1);
+        var waiter = CompletableFuture.supplyAsync(() -> memory.waitOn(16, 0, -1L));
+
+        // Act
+        var woken = 0;
+        while (woken == 0) {
+            woken = memory.notify(16, -1);
+            Thread.onSpinWait();
+        }
+
+        // Assert
+        assertEquals(1, woken);
+        assertEquals(0, (int) waiter.get(10, TimeUnit.SECONDS));
+        assertEquals(0, memory.notify(16, -1));
+    }
+}
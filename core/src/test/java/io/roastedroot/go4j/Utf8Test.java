@@ -0,0 +1,81 @@
+package io.roastedroot.go4j;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class Utf8Test {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "hello world", "héllo", "日本語", "emoji 😀 end", "mixed é日😀 text"})
+    public void roundtrip(String value) {
+        // Arrange
+        var memory = new ByteArrayMemory(new MemoryLimits(1, 10));
+        var utf8 = new Utf8(new byte[16]);
+        var expected = value.getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        var len = Utf8.encodedLength(value);
+        utf8.write(memory, 8, value, Utf8.measure(value));
+
+        // Assert
+        assertEquals(expected.length, len);
+        assertArrayEquals(expected, memory.readBytes(8, len));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a", "é", "日", "😀"})
+    public void largerThanScratch(String unit) {
+        // Arrange
+        var memory = new ByteArrayMemory(new MemoryLimits(2, 10));
+        var value = unit.repeat(20_000 / unit.length());
+        var expected = value.getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        var len = Utf8.encodedLength(value);
+        new Utf8(new byte[Utf8.SCRATCH_SIZE]).write(memory, 0, value, Utf8.measure(value));
+
+        // Assert
+        assertEquals(expected.length, len);
+        assertArrayEquals(expected, memory.readBytes(0, len));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a\ud800b", "a\udc00b", "ab\ud800", "\u00e9\ud800\ud800\udc00"})
+    public void unpairedSurrogates(String value) {
+        // Arrange
+        var memory = new ByteArrayMemory(new MemoryLimits(1, 10));
+        var expected = value.getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        var len = Utf8.encodedLength(value);
+        new Utf8(new byte[16]).write(memory, 0, value, Utf8.measure(value));
+
+        // Assert
+        assertEquals(expected.length, len);
+        assertArrayEquals(expected, memory.readBytes(0, len));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 6})
+    public void surrogatePairsAcrossChunks(int prefix) {
+        // Arrange
+        var memory = new ByteArrayMemory(new MemoryLimits(1, 10));
+        // 5 chars per chunk with a 16 bytes scratch buffer
+        var value = "\u00e9".repeat(prefix) + "\ud83d\ude00".repeat(4);
+        var expected = value.getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        var len = Utf8.encodedLength(value);
+        new Utf8(new byte[16]).write(memory, 0, value, Utf8.measure(value));
+
+        // Assert
+        assertEquals(expected.length, len);
+        assertArrayEquals(expected, memory.readBytes(0, len));
+    }
+}
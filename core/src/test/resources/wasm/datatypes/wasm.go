@@ -1,6 +1,8 @@
 package main
 
 import (
+	"runtime"
+
 	"github.com/roastedroot/go4j"
 )
 
@@ -46,6 +48,63 @@ func roundtripBool(in go4j.JavaRef) go4j.JavaRef {
 	return go4j.Alloc().Set().Bool(v)
 }
 
+//go:wasmexport roundtripInts
+func roundtripInts(in go4j.JavaRef) go4j.JavaRef {
+	v := in.AsInts()
+	return go4j.Alloc().Set().Ints(v)
+}
+
+//go:wasmexport roundtripLongs
+func roundtripLongs(in go4j.JavaRef) go4j.JavaRef {
+	v := in.AsLongs()
+	return go4j.Alloc().Set().Longs(v)
+}
+
+//go:wasmexport roundtripFloats
+func roundtripFloats(in go4j.JavaRef) go4j.JavaRef {
+	v := in.AsFloats()
+	return go4j.Alloc().Set().Floats(v)
+}
+
+//go:wasmexport roundtripDoubles
+func roundtripDoubles(in go4j.JavaRef) go4j.JavaRef {
+	v := in.AsDoubles()
+	return go4j.Alloc().Set().Doubles(v)
+}
+
+// hands a copy of the bytes to Java as a view: the copy is only referenced by
+// the pin once the function returns
+//
+//go:wasmexport bytesView
+func bytesView(in go4j.JavaRef) go4j.JavaRef {
+	ref := go4j.Alloc().Set().BytesView(in.AsBytes())
+	runtime.GC()
+	return ref
+}
+
+// the same n ints, transferred one ref per element or as a single array
+
+//go:wasmexport intsPerElement
+func intsPerElement(n uint32) go4j.JavaRef {
+	var last go4j.JavaRef
+	for i := uint32(0); i < n; i++ {
+		if i > 0 {
+			last.Free()
+		}
+		last = go4j.Alloc().Set().Int(i)
+	}
+	return last
+}
+
+//go:wasmexport intsBulk
+func intsBulk(n uint32) go4j.JavaRef {
+	v := make([]int32, n)
+	for i := range v {
+		v[i] = int32(i)
+	}
+	return go4j.Alloc().Set().Ints(v)
+}
+
 func main() {}
 
 
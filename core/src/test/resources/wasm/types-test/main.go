@@ -183,6 +183,34 @@ func testMultiBoolParams(a, b bool) bool {
 	return a && b
 }
 
+// Guest functions with String, byte[] and ByteBuffer parameters and returns
+//go:wasmexport test_string_param_return
+func testStringParamReturn(value uint64) uint64 {
+	return go4j.ReturnString("Hello " + go4j.ArgString(value))
+}
+
+//go:wasmexport test_multi_string_params
+func testMultiStringParams(a uint64, b uint64) uint64 {
+	return go4j.ReturnString(go4j.ArgString(a) + go4j.ArgString(b))
+}
+
+// returns the borrowed argument as is: the result points into the transfer arena
+//
+//go:wasmexport test_string_identity
+func testStringIdentity(value uint64) uint64 {
+	return go4j.ReturnString(go4j.BorrowArgString(value))
+}
+
+//go:wasmexport test_bytes_param_return
+func testBytesParamReturn(value uint64) uint64 {
+	in := go4j.BorrowArgBytes(value)
+	out := make([]byte, len(in))
+	for i, b := range in {
+		out[len(in)-1-i] = b
+	}
+	return go4j.ReturnBytes(out)
+}
+
 //go:wasmexport test_mixed_params
 func testMixedParams(i int32, l int64, d float64, f float32, b bool) int32 {
 	if b {
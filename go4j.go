@@ -31,6 +31,42 @@ func (set SetBuilder) Bytes(bytes []byte) JavaRef {
 	return set.ref
 }
 
+// BytesView hands bytes to Java as a GoBytesView, without copying them: the
+// slice stays pinned until Java releases the view, and must not be modified
+// in the meantime.
+func (set SetBuilder) BytesView(bytes []byte) JavaRef {
+	if len(bytes) == 0 {
+		setJavaBytesView(set.ref, nil, 0)
+		return set.ref
+	}
+	ptr := unsafe.Pointer(&bytes[0])
+	pin(uintptr(ptr), bytes)
+	setJavaBytesView(set.ref, ptr, uint32(len(bytes)))
+	return set.ref
+}
+
+// Ints, Longs, Floats and Doubles copy a whole slice into a Java array of the
+// matching primitive type with a single host call.
+func (set SetBuilder) Ints(v []int32) JavaRef {
+	setJavaInts(set.ref, unsafe.Pointer(unsafe.SliceData(v)), uint32(len(v)))
+	return set.ref
+}
+
+func (set SetBuilder) Longs(v []int64) JavaRef {
+	setJavaLongs(set.ref, unsafe.Pointer(unsafe.SliceData(v)), uint32(len(v)))
+	return set.ref
+}
+
+func (set SetBuilder) Floats(v []float32) JavaRef {
+	setJavaFloats(set.ref, unsafe.Pointer(unsafe.SliceData(v)), uint32(len(v)))
+	return set.ref
+}
+
+func (set SetBuilder) Doubles(v []float64) JavaRef {
+	setJavaDoubles(set.ref, unsafe.Pointer(unsafe.SliceData(v)), uint32(len(v)))
+	return set.ref
+}
+
 func (set SetBuilder) Int(v uint32) JavaRef {
 	setJavaInt(set.ref, v)
 	return set.ref
@@ -87,6 +123,92 @@ func (ref JavaRef) AsBytes() []byte {
 	return buffer
 }
 
+func (ref JavaRef) AsInts() []int32 {
+	return transferred[int32](asGoInts(ref))
+}
+
+func (ref JavaRef) AsLongs() []int64 {
+	return transferred[int64](asGoLongs(ref))
+}
+
+func (ref JavaRef) AsFloats() []float32 {
+	return transferred[float32](asGoFloats(ref))
+}
+
+func (ref JavaRef) AsDoubles() []float64 {
+	return transferred[float64](asGoDoubles(ref))
+}
+
+// copies the elements the host transferred at ptr<<32|len, and frees them
+func transferred[T any](v uint64) []T {
+	ptr := unsafe.Pointer(uintptr(uint32(v >> 32)))
+	length := int(uint32(v))
+
+	if ptr == nil || length == 0 {
+		return []T{}
+	}
+
+	result := append([]T(nil), unsafe.Slice((*T)(ptr), length)...)
+
+	WasmFree(ptr)
+	return result
+}
+
+// ArgString and ArgBytes decode a String, byte[] or ByteBuffer parameter of a
+// generated invokable, written by Java in guest memory as ptr<<32|len, into a
+// copy owned by the guest.
+func ArgString(v uint64) string {
+	return string(BorrowArgBytes(v))
+}
+
+func ArgBytes(v uint64) []byte {
+	return append([]byte{}, BorrowArgBytes(v)...)
+}
+
+// BorrowArgString and BorrowArgBytes decode the same parameters without
+// copying. The result aliases the transfer arena, which Java overwrites with
+// the arguments of the next call: it is only valid until the call returns. A
+// borrowed string kept longer silently changes content, use ArgString for
+// anything that outlives the call.
+func BorrowArgString(v uint64) string {
+	ptr := (*byte)(unsafe.Pointer(uintptr(uint32(v >> 32))))
+	length := int(uint32(v))
+	if ptr == nil || length == 0 {
+		return ""
+	}
+	return unsafe.String(ptr, length)
+}
+
+func BorrowArgBytes(v uint64) []byte {
+	ptr := (*byte)(unsafe.Pointer(uintptr(uint32(v >> 32))))
+	length := int(uint32(v))
+	if ptr == nil || length == 0 {
+		return []byte{}
+	}
+	return unsafe.Slice(ptr, length)
+}
+
+// ReturnString and ReturnBytes hand a String, byte[] or ByteBuffer result of a
+// generated invokable to Java as ptr<<32|len, without copying it: the value
+// stays pinned until Java has read it, and must not be modified meanwhile.
+func ReturnString(s string) uint64 {
+	if len(s) == 0 {
+		return 0
+	}
+	ptr := unsafe.StringData(s)
+	pin(uintptr(unsafe.Pointer(ptr)), s)
+	return uint64(uintptr(unsafe.Pointer(ptr)))<<32 | uint64(len(s))
+}
+
+func ReturnBytes(b []byte) uint64 {
+	if len(b) == 0 {
+		return 0
+	}
+	ptr := unsafe.SliceData(b)
+	pin(uintptr(unsafe.Pointer(ptr)), b)
+	return uint64(uintptr(unsafe.Pointer(ptr)))<<32 | uint64(len(b))
+}
+
 func (ref JavaRef) AsUint32() uint32 {
 	return asGoUint32(ref)
 }
@@ -120,6 +242,21 @@ func setJavaString(ref JavaRef, str string)
 //go:wasmimport env setJavaBytes
 func setJavaBytes(ref JavaRef, bytesPtr unsafe.Pointer, len uint32)
 
+//go:wasmimport env setJavaBytesView
+func setJavaBytesView(ref JavaRef, bytesPtr unsafe.Pointer, len uint32)
+
+//go:wasmimport env setJavaInts
+func setJavaInts(ref JavaRef, ptr unsafe.Pointer, len uint32)
+
+//go:wasmimport env setJavaLongs
+func setJavaLongs(ref JavaRef, ptr unsafe.Pointer, len uint32)
+
+//go:wasmimport env setJavaFloats
+func setJavaFloats(ref JavaRef, ptr unsafe.Pointer, len uint32)
+
+//go:wasmimport env setJavaDoubles
+func setJavaDoubles(ref JavaRef, ptr unsafe.Pointer, len uint32)
+
 //go:wasmimport env setJavaInt
 func setJavaInt(ref JavaRef, v uint32)
 
@@ -141,6 +278,18 @@ func asGoString(str JavaRef) uint64
 //go:wasmimport env asGoBytes
 func asGoBytes(str JavaRef) uint64
 
+//go:wasmimport env asGoInts
+func asGoInts(ref JavaRef) uint64
+
+//go:wasmimport env asGoLongs
+func asGoLongs(ref JavaRef) uint64
+
+//go:wasmimport env asGoFloats
+func asGoFloats(ref JavaRef) uint64
+
+//go:wasmimport env asGoDoubles
+func asGoDoubles(ref JavaRef) uint64
+
 //go:wasmimport env asGoUint32
 func asGoUint32(ref JavaRef) uint32
 
@@ -159,29 +308,170 @@ func asGoBool(ref JavaRef) bool
 //go:wasmimport env free
 func free(str JavaRef)
 
-// stable alloc/free implementation from:
-// https://github.com/tinygo-org/tinygo/blob/2a76ceb7dd5ea5a834ec470b724882564d9681b3/src/runtime/arch_tinygowasm_malloc.go#L7
-var allocs = make(map[uintptr][]byte)
+// size-class slab allocator: small blocks are carved out of 64 KiB slabs
+// and recycled through per-class free lists, larger ones are allocated
+// individually. Every block is preceded by an 8 bytes header holding a magic
+// number and its size class.
+const (
+	headerSize = 8
+	slabSize   = 64 * 1024
+	allocMagic = 0x676f346a // "go4j"
+	freedMagic = 0x66726565 // "free"
+	largeClass = 0xffffffff
+)
 
-//go:wasmexport wasm_malloc
-func WasmMalloc(size uintptr) unsafe.Pointer {
+var sizeClasses = [...]uintptr{16, 32, 64, 128, 256, 512, 1024, 2048, 4096}
+
+// heads of the free lists, the next pointer is stored in the freed block
+var freeLists [len(sizeClasses)]uintptr
+
+// slabs are never released, this keeps them reachable for the GC
+var slabs [][]byte
+var slabPos, slabEnd uintptr
+
+var largeAllocs = make(map[uintptr][]byte)
+
+func sizeClass(size uintptr) int {
+	for i, c := range sizeClasses {
+		if size <= c {
+			return i
+		}
+	}
+	return -1
+}
+
+func header(ptr uintptr) *[2]uint32 {
+	return (*[2]uint32)(unsafe.Pointer(ptr - headerSize))
+}
+
+func malloc(size uintptr, zero bool) unsafe.Pointer {
 	if size == 0 {
 		return nil
 	}
-	buf := make([]byte, size)
-	ptr := unsafe.Pointer(&buf[0])
-	allocs[uintptr(ptr)] = buf
-	return ptr
+	class := sizeClass(size)
+	if class < 0 {
+		buf := make([]byte, headerSize+size)
+		ptr := uintptr(unsafe.Pointer(&buf[0])) + headerSize
+		largeAllocs[ptr] = buf
+		h := header(ptr)
+		h[0] = allocMagic
+		h[1] = largeClass
+		return unsafe.Pointer(ptr)
+	}
+
+	var ptr uintptr
+	if head := freeLists[class]; head != 0 {
+		freeLists[class] = *(*uintptr)(unsafe.Pointer(head))
+		ptr = head
+		if zero {
+			clear(unsafe.Slice((*byte)(unsafe.Pointer(ptr)), sizeClasses[class]))
+		}
+	} else {
+		// fresh slab memory is already zeroed
+		block := headerSize + sizeClasses[class]
+		if slabPos+block > slabEnd {
+			slab := make([]byte, slabSize)
+			slabs = append(slabs, slab)
+			slabPos = uintptr(unsafe.Pointer(&slab[0]))
+			slabEnd = slabPos + slabSize
+		}
+		ptr = slabPos + headerSize
+		slabPos += block
+	}
+	h := header(ptr)
+	h[0] = allocMagic
+	h[1] = uint32(class)
+	return unsafe.Pointer(ptr)
+}
+
+//go:wasmexport wasm_malloc
+func WasmMalloc(size uintptr) unsafe.Pointer {
+	return malloc(size, true)
+}
+
+// same as wasm_malloc, but the content of the block is undefined: for
+// buffers the host overwrites right away
+//
+//go:wasmexport wasm_malloc_nozero
+func WasmMallocNoZero(size uintptr) unsafe.Pointer {
+	return malloc(size, false)
 }
 
 //go:wasmexport wasm_free
 func WasmFree(ptr unsafe.Pointer) {
-	if ptr == nil {
+	if ptr == nil || inArena(uintptr(ptr)) {
 		return
 	}
-	if _, ok := allocs[uintptr(ptr)]; ok {
-		delete(allocs, uintptr(ptr))
-	} else {
+	p := uintptr(ptr)
+	if unpin(p) {
+		return
+	}
+	h := header(p)
+	if h[0] != allocMagic {
 		panic("free: invalid pointer")
 	}
+	h[0] = freedMagic
+	if h[1] == largeClass {
+		delete(largeAllocs, p)
+		return
+	}
+	*(*uintptr)(ptr) = freeLists[h[1]]
+	freeLists[h[1]] = p
+}
+
+// transfer arena: a region the host bump-allocates values into while a call
+// is in progress, and recycles as a whole once the outermost call returns.
+// Pointers into the arena are released by the host, WasmFree ignores them.
+var arena []byte
+
+//go:wasmexport wasm_reserve_arena
+func WasmReserveArena(size uint32) unsafe.Pointer {
+	if size == 0 {
+		return nil
+	}
+	arena = make([]byte, size)
+	return unsafe.Pointer(&arena[0])
+}
+
+func inArena(ptr uintptr) bool {
+	if len(arena) == 0 {
+		return false
+	}
+	start := uintptr(unsafe.Pointer(&arena[0]))
+	return ptr >= start && ptr < start+uintptr(len(arena))
+}
+
+// values read by Java in place (byte views, returned strings and slices), kept
+// reachable until Java releases them through wasm_free; a value handed over
+// more than once is pinned once per use. Values in the transfer arena, e.g. an
+// argument returned as is, are not pinned: the arena stays reachable and
+// WasmFree ignores them.
+type pinned struct {
+	value any
+	count int
+}
+
+var pins = make(map[uintptr]*pinned)
+
+func pin(ptr uintptr, value any) {
+	if inArena(ptr) {
+		return
+	}
+	if p, ok := pins[ptr]; ok {
+		p.count++
+		return
+	}
+	pins[ptr] = &pinned{value, 1}
+}
+
+func unpin(ptr uintptr) bool {
+	p, ok := pins[ptr]
+	if !ok {
+		return false
+	}
+	p.count--
+	if p.count == 0 {
+		delete(pins, ptr)
+	}
+	return true
 }
@@ -4,15 +4,22 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
 import com.dylibso.chicory.wasm.Parser;
 import io.roastedroot.go4j.Go;
+import io.roastedroot.go4j.GoPool;
 import io.roastedroot.go4j.annotations.Builtins;
 import io.roastedroot.go4j.annotations.GuestFunction;
 import io.roastedroot.go4j.annotations.HostFunction;
 import io.roastedroot.go4j.annotations.HostRefParam;
 import io.roastedroot.go4j.annotations.Invokables;
+import io.roastedroot.go4j.annotations.Ownership;
 import io.roastedroot.go4j.annotations.ReturnsHostRef;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.Test;
 
 class TypesTest {
@@ -99,6 +106,53 @@ class TypesTest {
         int testMixedParams(int i, long l, double d, float f, boolean b);
     }
 
+    // String, byte[] and ByteBuffer written to and read from guest memory directly; only
+    // compiled for now, the committed types-test modules predate these exports
+    @Invokables
+    interface DirectApi {
+        @GuestFunction("test_string_param_return")
+        String testStringParamReturn(String value);
+
+        @GuestFunction("test_multi_string_params")
+        String testMultiStringParams(String a, String b);
+
+        @GuestFunction("test_string_identity")
+        String testStringIdentity(String value);
+
+        @GuestFunction("test_bytes_param_return")
+        byte[] testBytesParamReturn(byte[] value);
+
+        @GuestFunction("test_bytes_param_return")
+        ByteBuffer testBufferParamReturn(ByteBuffer value);
+    }
+
+    // calls submitted to the executor of the instance (or of the pool)
+    @Invokables
+    interface AsyncApi {
+        @GuestFunction("test_int_to_java")
+        CompletableFuture<Void> testIntToJava();
+
+        @GuestFunction("test_mixed_params")
+        CompletableFuture<Integer> testMixedParams(int i, long l, double d, float f, boolean b);
+
+        @ReturnsHostRef(Ownership.OWNED)
+        @GuestFunction("test_ref_param_return")
+        CompletableFuture<String> testRefParamReturn(
+                @HostRefParam(Ownership.TRANSFERRED) String value);
+    }
+
+    // refs released by the generated glue, see testRefCountStaysFlat
+    @Invokables
+    interface OwnedRefApi {
+        // the guest hands the parameter back as its result
+        @ReturnsHostRef(Ownership.OWNED)
+        @GuestFunction("test_ref_param_return")
+        String testRefParamReturn(@HostRefParam(Ownership.TRANSFERRED) String value);
+
+        @GuestFunction("test_ref_roundtrip")
+        void testRefRoundtrip();
+    }
+
     @Builtins("from_java")
     class JavaApi {
         // Host functions for primitive types as parameters
@@ -206,23 +260,41 @@ class TypesTest {
         }
     }
 
+    // frees the ref it hands to the guest, see testRefCountStaysFlat
+    @Builtins("from_java")
+    class BorrowedRefJavaApi extends JavaApi {
+        @Override
+        @ReturnsHostRef(Ownership.BORROWED)
+        @HostFunction("test_ref_return")
+        public String testRefReturn() {
+            return super.testRefReturn();
+        }
+    }
+
     class GoTest {
         private final Go go;
         private final GoApi goApi;
         private final JavaApi javaApi;
 
         GoTest() {
+            this("tinygo", builder -> {});
+        }
+
+        GoTest(String flavor, Consumer<Go.Builder> config) {
             var module =
                     Parser.parse(
                             Path.of(
-                                    "../../../../core/src/test/resources/wasm/compiled/types-test-tinygo-wasip1.wasm"));
+                                    "../../../../core/src/test/resources/wasm/compiled/types-test-"
+                                            + flavor
+                                            + "-wasip1.wasm"));
             this.javaApi = new JavaApi();
-            this.go =
+            var builder =
                     Go.builder(module)
                             .withWasi()
                             .withAdditionalImport(
-                                    JavaApi_Builtins.toAdditionalImports(this.javaApi))
-                            .build();
+                                    JavaApi_Builtins.toAdditionalImports(this.javaApi));
+            config.accept(builder);
+            this.go = builder.build();
             this.goApi = GoApi_Invokables.create(go);
             go.run();
         }
@@ -418,6 +490,39 @@ class TypesTest {
         assertEquals("Hello", result); // Should return the same reference
     }
 
+    @Test
+    public void testRefCountStaysFlat() {
+        // Arrange
+        // Go rather than TinyGo, whose heap grows by a stack on every exported call; compiled, as
+        // a call takes tens of milliseconds on the interpreter
+        var typesTest =
+                new GoTest(
+                        "go",
+                        builder ->
+                                builder.withMachineFactory(MachineFactoryCompiler::compile)
+                                        .withAdditionalImport(
+                                                BorrowedRefJavaApi_Builtins.toAdditionalImports(
+                                                        new BorrowedRefJavaApi())));
+        var ownedApi = OwnedRefApi_Invokables.create(typesTest.go);
+        var refs = typesTest.go.refStore();
+        // 10M with -Psoak
+        var calls = Integer.getInteger("go4j.soak.calls", 10_000);
+        var value = "Hello";
+        ownedApi.testRefParamReturn(value);
+        ownedApi.testRefRoundtrip();
+        var live = refs.liveCount();
+
+        // Act
+        for (int i = 0; i < calls; i++) {
+            assertEquals(value, ownedApi.testRefParamReturn(value));
+            ownedApi.testRefRoundtrip();
+        }
+
+        // Assert
+        assertEquals(live, refs.liveCount());
+        assertTrue(refs.highWaterMark() <= live + 1);
+    }
+
     // Tests for guest functions with multiple parameters
     @Test
     public void testMultiIntParams() {
@@ -502,4 +607,148 @@ class TypesTest {
         // Assert
         assertEquals(0, result); // Should return 0 when b is false
     }
+
+    @Test
+    public void testInvokablesDoNotAllocate() {
+        // Arrange
+        // the Go fixture on the compiled machine, see testRefCountStaysFlat
+        var typesTest =
+                new GoTest(
+                        "go",
+                        builder -> builder.withMachineFactory(MachineFactoryCompiler::compile));
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().getId();
+        var raw = typesTest.go.function("test_mixed_params");
+        var rawArgs = new long[5];
+        var iterations = 10_000;
+        for (int i = 0; i < iterations; i++) {
+            typesTest.goApi.testMixedParams(1, 2L, 3.0, 4.0f, true);
+            raw.apply(rawArgs);
+        }
+
+        // Act
+        var start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            raw.apply(rawArgs);
+        }
+        var rawBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            typesTest.goApi.testMixedParams(1, 2L, 3.0, 4.0f, true);
+        }
+        var invokableBytes = threads.getThreadAllocatedBytes(threadId) - start;
+
+        // Assert - the generated glue adds nothing on top of the runtime call itself
+        assertTrue(
+                invokableBytes - rawBytes < iterations,
+                "invokables allocated "
+                        + invokableBytes
+                        + " bytes, the raw export call "
+                        + rawBytes
+                        + " bytes");
+    }
+
+    @Test
+    public void testPooledInvokables() {
+        // Arrange
+        var module =
+                Parser.parse(
+                        Path.of(
+                                "../../../../core/src/test/resources/wasm/compiled/types-test-tinygo-wasip1.wasm"));
+        var javaApi = new JavaApi();
+        try (var pool =
+                GoPool.builder(module)
+                        .withGoBuilder(
+                                builder ->
+                                        builder.withWasi()
+                                                .withAdditionalImport(
+                                                        JavaApi_Builtins.toAdditionalImports(
+                                                                javaApi)))
+                        .withInitialSize(2)
+                        .withMaxSize(4)
+                        .build()) {
+            var goApi = GoApi_Invokables.create(pool);
+
+            // Act
+            var futures = new CompletableFuture<?>[16];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] =
+                        CompletableFuture.supplyAsync(
+                                () -> goApi.testMixedParams(1, 2L, 3.0, 4.0f, true));
+            }
+            CompletableFuture.allOf(futures).join();
+
+            // Assert
+            for (var future : futures) {
+                assertEquals(10, future.join());
+            }
+            assertEquals(futures.length, pool.metrics().leases());
+            assertEquals(0, pool.metrics().inUse());
+        }
+    }
+
+    @Test
+    public void testAsyncInvokables() {
+        // Arrange
+        var typesTest = new GoTest();
+        var asyncApi = AsyncApi_Invokables.create(typesTest.go);
+
+        // Act - fanned out from many threads, run one at a time on the instance
+        var futures = new CompletableFuture<?>[64];
+        for (int i = 0; i < futures.length; i++) {
+            var value = "value " + i;
+            futures[i] =
+                    CompletableFuture.supplyAsync(() -> asyncApi.testRefParamReturn(value))
+                            .thenCompose(result -> result)
+                            .thenCombine(
+                                    asyncApi.testMixedParams(1, 2L, 3.0, 4.0f, true),
+                                    (result, sum) -> result + " " + sum);
+        }
+        asyncApi.testIntToJava().join();
+        CompletableFuture.allOf(futures).join();
+
+        // Assert
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals("value " + i + " 10", futures[i].join());
+        }
+        assertEquals(0, typesTest.go.refStore().liveCount());
+    }
+
+    @Test
+    public void testPooledAsyncInvokables() {
+        // Arrange
+        var module =
+                Parser.parse(
+                        Path.of(
+                                "../../../../core/src/test/resources/wasm/compiled/types-test-tinygo-wasip1.wasm"));
+        var javaApi = new JavaApi();
+        try (var pool =
+                GoPool.builder(module)
+                        .withGoBuilder(
+                                builder ->
+                                        builder.withWasi()
+                                                .withAdditionalImport(
+                                                        JavaApi_Builtins.toAdditionalImports(
+                                                                javaApi)))
+                        .withInitialSize(2)
+                        .withMaxSize(4)
+                        .build()) {
+            var asyncApi = AsyncApi_Invokables.create(pool);
+
+            // Act
+            var futures = new CompletableFuture<?>[16];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = asyncApi.testMixedParams(1, 2L, 3.0, 4.0f, true);
+            }
+            CompletableFuture.allOf(futures).join();
+
+            // Assert
+            for (var future : futures) {
+                assertEquals(10, future.join());
+            }
+            assertEquals(futures.length, pool.metrics().leases());
+            assertEquals(0, pool.metrics().inUse());
+        }
+    }
 }
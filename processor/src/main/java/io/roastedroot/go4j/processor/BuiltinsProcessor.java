@@ -13,6 +13,7 @@ import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.ArrayAccessExpr;
 import com.github.javaparser.ast.expr.ArrayCreationExpr;
 import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.CastExpr;
 import com.github.javaparser.ast.expr.ConditionalExpr;
@@ -69,9 +70,26 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
         }
 
         List<Expression> functions = new ArrayList<>();
+        // one result buffer per function returning a value, reused across its calls
+        var builtinsBody = new BlockStmt();
         for (Element member : elements().getAllMembers(type)) {
             if (member instanceof ExecutableElement && annotatedWith(member, HostFunction.class)) {
-                functions.add(processHostFunction((ExecutableElement) member, name));
+                var executable = (ExecutableElement) member;
+                var resultsName = "results" + functions.size();
+                if (extractHasReturn(executable)) {
+                    builtinsBody.addStatement(
+                            new VariableDeclarationExpr(
+                                    new VariableDeclarator(
+                                            parseType("long[]"),
+                                            resultsName,
+                                            new ArrayCreationExpr(
+                                                    parseType("long"),
+                                                    NodeList.nodeList(
+                                                            new ArrayCreationLevel(
+                                                                    new IntegerLiteralExpr(1))),
+                                                    null))));
+                }
+                functions.add(processHostFunction(executable, name, resultsName));
             }
         }
 
@@ -111,10 +129,12 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
                         new NodeList<>(new ArrayCreationLevel()),
                         new ArrayInitializerExpr(NodeList.nodeList(functions)));
 
+        // the imports are created per instance, so are the result buffers
+        builtinsBody.addStatement(new ReturnStmt(newGoFunctions));
         var builtinsCreationHandle =
                 new LambdaExpr(
                                 new Parameter(parseType("Go"), new SimpleName("goInst")),
-                                newGoFunctions)
+                                builtinsBody)
                         .setEnclosingParameters(true);
 
         classDef.addMethod("toAdditionalImports")
@@ -146,7 +166,8 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
         }
     }
 
-    private Expression processHostFunction(ExecutableElement executable, String moduleName) {
+    private Expression processHostFunction(
+            ExecutableElement executable, String moduleName, String resultsName) {
         // compute function name
         var name = executable.getAnnotation(HostFunction.class).value();
         if (name.isEmpty()) {
@@ -158,6 +179,18 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
         // duplicated to automatically compute arguments
         NodeList<Expression> arguments = new NodeList<>();
         for (VariableElement parameter : executable.getParameters()) {
+            var refSuffix = primitiveRefSuffix(parameter.asType().toString());
+            if (refSuffix != null && annotatedWith(parameter, HostRefParam.class)) {
+                arguments.add(
+                        new MethodCallExpr(
+                                new NameExpr("goInst"),
+                                new SimpleName(refParamAccess(parameter) + refSuffix),
+                                NodeList.nodeList(
+                                        new CastExpr(
+                                                parseType("int"), argExpr(paramTypes.size())))));
+                paramTypes.add(extractWasmType("int"));
+                continue;
+            }
             switch (parameter.asType().toString()) {
                 case "int":
                     arguments.add(new CastExpr(parseType("int"), argExpr(paramTypes.size())));
@@ -192,7 +225,7 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
                         var jObj =
                                 new MethodCallExpr(
                                         new NameExpr("goInst"),
-                                        new SimpleName("getJavaObj"),
+                                        new SimpleName(refParamAccess(parameter) + "Obj"),
                                         NodeList.nodeList(
                                                 new CastExpr(
                                                         parseType("int"),
@@ -221,6 +254,26 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
         BlockStmt handleBody = new BlockStmt();
         if (!hasReturn) {
             handleBody.addStatement(invocation).addStatement(new ReturnStmt(new NullLiteralExpr()));
+        } else if (primitiveRefSuffix(executable.getReturnType().toString()) != null
+                && annotatedWith(executable, ReturnsHostRef.class)) {
+            returnType = extractWasmType("int");
+            var result =
+                    new VariableDeclarator(
+                            parseType("int"),
+                            "result",
+                            refResult(
+                                    executable,
+                                    new MethodCallExpr(
+                                            new NameExpr("goInst"),
+                                            new SimpleName(
+                                                    "allocJava"
+                                                            + primitiveRefSuffix(
+                                                                    executable
+                                                                            .getReturnType()
+                                                                            .toString())),
+                                            NodeList.nodeList(invocation))));
+            handleBody.addStatement(new ExpressionStmt(new VariableDeclarationExpr(result)));
+            returnResult(handleBody, resultsName, new NameExpr("result"));
         } else {
             returnType = extractWasmType(executable.getReturnType().toString());
             VariableDeclarator result;
@@ -248,15 +301,16 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
                     break;
                 default:
                     if (annotatedWith(executable, ReturnsHostRef.class)) {
-                        // TODO: verify what happens when I want to re-use an incoming reference?
                         result =
                                 new VariableDeclarator(
                                         parseType("int"),
                                         "result",
-                                        new MethodCallExpr(
-                                                new NameExpr("goInst"),
-                                                new SimpleName("allocJavaObj"),
-                                                NodeList.nodeList(invocation)));
+                                        refResult(
+                                                executable,
+                                                new MethodCallExpr(
+                                                        new NameExpr("goInst"),
+                                                        new SimpleName("allocJavaObj"),
+                                                        NodeList.nodeList(invocation))));
                         break;
                     } else {
                         throw new IllegalArgumentException(
@@ -289,12 +343,7 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
                     break;
             }
 
-            handleBody.addStatement(
-                    new ReturnStmt(
-                            new ArrayCreationExpr(
-                                    parseType("long"),
-                                    new NodeList<>(new ArrayCreationLevel()),
-                                    new ArrayInitializerExpr(NodeList.nodeList(returnValue)))));
+            returnResult(handleBody, resultsName, returnValue);
         }
 
         // lambda for js function binding
@@ -334,7 +383,47 @@ public final class BuiltinsProcessor extends Go4JAbstractProcessor {
         return function;
     }
 
+    private static void returnResult(BlockStmt body, String resultsName, Expression value) {
+        body.addStatement(
+                new AssignExpr(
+                        new ArrayAccessExpr(new NameExpr(resultsName), new IntegerLiteralExpr(0)),
+                        value,
+                        AssignExpr.Operator.ASSIGN));
+        body.addStatement(new ReturnStmt(new NameExpr(resultsName)));
+    }
+
     private static Expression argExpr(int n) {
         return new ArrayAccessExpr(new NameExpr("args"), new IntegerLiteralExpr(n));
     }
+
+    // transferred refs are freed once read, the others stay with the guest
+    private static String refParamAccess(VariableElement parameter) {
+        switch (parameter.getAnnotation(HostRefParam.class).value()) {
+            case GUEST:
+            case BORROWED:
+                return "getJava";
+            case TRANSFERRED:
+                return "takeJava";
+            default:
+                throw new IllegalArgumentException(
+                        "unsupported ownership of parameter " + parameter.getSimpleName());
+        }
+    }
+
+    // borrowed refs are freed when the outermost guest call returns, the others by the guest
+    private static Expression refResult(ExecutableElement executable, Expression ref) {
+        switch (executable.getAnnotation(ReturnsHostRef.class).value()) {
+            case GUEST:
+            case OWNED:
+                return ref;
+            case BORROWED:
+                return new MethodCallExpr(
+                        new NameExpr("goInst"),
+                        new SimpleName("freeAfterCall"),
+                        NodeList.nodeList(ref));
+            default:
+                throw new IllegalArgumentException(
+                        "unsupported ownership of the result of " + executable.getSimpleName());
+        }
+    }
 }
@@ -66,6 +66,51 @@ public abstract class Go4JAbstractProcessor extends AbstractProcessor {
         return !returnName.equals("void");
     }
 
+    // suffix of the typed Go accessors (allocJavaLong, getJavaLong, ...) for primitive host refs
+    protected static String primitiveRefSuffix(String typeName) {
+        switch (typeName) {
+            case "int":
+                return "Int";
+            case "long":
+                return "Long";
+            case "float":
+                return "Float";
+            case "double":
+                return "Double";
+            case "boolean":
+                return "Bool";
+            default:
+                return null;
+        }
+    }
+
+    // Go methods writing String, byte[] and ByteBuffer arguments straight into guest memory
+    protected static String directArgMethod(String typeName) {
+        switch (typeName) {
+            case "java.lang.String":
+                return "argString";
+            case "byte[]":
+            case "java.nio.ByteBuffer":
+                return "argBytes";
+            default:
+                return null;
+        }
+    }
+
+    // Go methods reading String, byte[] and ByteBuffer results packed as ptr << 32 | len
+    protected static String directReturnMethod(String typeName) {
+        switch (typeName) {
+            case "java.lang.String":
+                return "takeGoString";
+            case "byte[]":
+                return "takeGoBytes";
+            case "java.nio.ByteBuffer":
+                return "takeGoByteBuffer";
+            default:
+                return null;
+        }
+    }
+
     protected static boolean annotatedWith(
             Element element, Class<? extends Annotation> annotation) {
         var annotationName = annotation.getName();
@@ -10,25 +10,37 @@ import com.github.javaparser.ast.ArrayCreationLevel;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.ArrayAccessExpr;
 import com.github.javaparser.ast.expr.ArrayCreationExpr;
-import com.github.javaparser.ast.expr.ArrayInitializerExpr;
 import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.ClassExpr;
 import com.github.javaparser.ast.expr.ConditionalExpr;
 import com.github.javaparser.ast.expr.EnclosedExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
 import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.NullLiteralExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.expr.SimpleName;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.TypeExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.type.UnknownType;
 import io.roastedroot.go4j.annotations.GuestFunction;
 import io.roastedroot.go4j.annotations.HostRefParam;
 import io.roastedroot.go4j.annotations.Invokables;
@@ -36,11 +48,13 @@ import io.roastedroot.go4j.annotations.ReturnsHostRef;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.processing.Generated;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 
 public final class InvokablesProcessor extends Go4JAbstractProcessor {
 
@@ -72,6 +86,8 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
         }
 
         cu.addImport("io.roastedroot.go4j.Go");
+        cu.addImport("io.roastedroot.go4j.GoFunction");
+        cu.addImport("io.roastedroot.go4j.GoPool");
         cu.addImport("com.dylibso.chicory.wasm.types.Value");
 
         var typeName = type.getSimpleName().toString();
@@ -88,14 +104,38 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
 
         var constructor = classDef.addConstructor().addParameter("Go", "go").setPrivate(true);
 
-        constructor
+        var constructorBody = constructor.createBody();
+        constructorBody.addStatement(
+                new AssignExpr(
+                        new FieldAccessExpr(new ThisExpr(), "go"),
+                        new NameExpr("go"),
+                        AssignExpr.Operator.ASSIGN));
+
+        // dispatches every call to the bindings of a leased instance
+        var pooledDef =
+                new ClassOrInterfaceDeclaration()
+                        .setName("Pooled")
+                        .setPrivate(true)
+                        .setStatic(true)
+                        .setFinal(true)
+                        .addImplementedType(typeName);
+        classDef.addMember(pooledDef);
+
+        pooledDef.addField(
+                parseType("GoPool"), "pool", Modifier.Keyword.PRIVATE, Modifier.Keyword.FINAL);
+
+        pooledDef
+                .addConstructor()
+                .addParameter("GoPool", "pool")
+                .setPrivate(true)
                 .createBody()
                 .addStatement(
                         new AssignExpr(
-                                new FieldAccessExpr(new ThisExpr(), "go"),
-                                new NameExpr("go"),
+                                new FieldAccessExpr(new ThisExpr(), "pool"),
+                                new NameExpr("pool"),
                                 AssignExpr.Operator.ASSIGN));
 
+        var functionCount = 0;
         for (Element member : elements().getAllMembers(type)) {
             if (member instanceof ExecutableElement && annotatedWith(member, GuestFunction.class)) {
                 var name = member.getAnnotation(GuestFunction.class).value();
@@ -103,18 +143,98 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                     name = member.getSimpleName().toString();
                 }
 
+                // the export is resolved once, the arguments buffer is reused across calls
+                var functionField = "function" + functionCount;
+                var argsField = "args" + functionCount;
+                functionCount++;
+                classDef.addField(
+                        parseType("GoFunction"),
+                        functionField,
+                        Modifier.Keyword.PRIVATE,
+                        Modifier.Keyword.FINAL);
+                constructorBody.addStatement(
+                        new AssignExpr(
+                                new FieldAccessExpr(new ThisExpr(), functionField),
+                                new MethodCallExpr(
+                                        new NameExpr("go"),
+                                        new SimpleName("function"),
+                                        NodeList.nodeList(new StringLiteralExpr(name))),
+                                AssignExpr.Operator.ASSIGN));
+
                 var executable = (ExecutableElement) member;
 
+                // CompletableFuture<T> methods submit a private method returning T
+                var asyncResult = asyncResultType(executable);
+                var methodName = member.getSimpleName().toString();
+                var callName = (asyncResult != null) ? methodName + "Sync" : methodName;
+                var returnTypeName =
+                        (asyncResult != null) ? asyncResult : executable.getReturnType().toString();
+
                 var overriddenMethod =
-                        classDef.addMethod(
+                        (asyncResult != null)
+                                ? classDef.addMethod(callName, Modifier.Keyword.PRIVATE)
+                                : classDef.addMethod(methodName, Modifier.Keyword.PUBLIC)
+                                        .addAnnotation(Override.class);
+                var pooledMethod =
+                        pooledDef
+                                .addMethod(
                                         member.getSimpleName().toString(), Modifier.Keyword.PUBLIC)
                                 .addAnnotation(Override.class);
 
                 NodeList<Expression> arguments = NodeList.nodeList();
+                NodeList<Expression> forwarded = NodeList.nodeList();
+                // refs lent to the guest for the duration of the call
+                NodeList<Statement> borrowedRefs = NodeList.nodeList();
+                NodeList<Statement> releases = NodeList.nodeList();
                 for (int i = 0; i < executable.getParameters().size(); i++) {
                     var param = executable.getParameters().get(i);
                     var typeLiteral = param.asType().toString();
                     overriddenMethod.addParameter(typeLiteral, "arg" + i);
+                    pooledMethod.addParameter(typeLiteral, "arg" + i);
+                    forwarded.add(new NameExpr("arg" + i));
+                    if (annotatedWith(param, HostRefParam.class)) {
+                        var refSuffix = primitiveRefSuffix(typeLiteral);
+                        // plain refs, so that ref scopes track them
+                        var ref =
+                                new MethodCallExpr(
+                                        new NameExpr("go"),
+                                        new SimpleName(
+                                                (refSuffix != null)
+                                                        ? "allocJava" + refSuffix
+                                                        : "allocJavaObj"),
+                                        NodeList.nodeList(new NameExpr("arg" + i)));
+                        switch (param.getAnnotation(HostRefParam.class).value()) {
+                            case BORROWED:
+                                borrowedRefs.add(
+                                        new ExpressionStmt(
+                                                new VariableDeclarationExpr(
+                                                        new VariableDeclarator(
+                                                                parseType("int"),
+                                                                "ref" + i,
+                                                                ref))));
+                                releases.add(
+                                        new ExpressionStmt(
+                                                new MethodCallExpr(
+                                                        new NameExpr("go"),
+                                                        new SimpleName("freeJavaObj"),
+                                                        NodeList.nodeList(
+                                                                new NameExpr("ref" + i)))));
+                                arguments.add(new NameExpr("ref" + i));
+                                break;
+                            case GUEST:
+                            case TRANSFERRED:
+                                // released by the guest
+                                arguments.add(ref);
+                                break;
+                            default:
+                                throw new IllegalArgumentException(
+                                        "unsupported ownership of parameter "
+                                                + param.getSimpleName()
+                                                + " for function "
+                                                + member.getSimpleName().toString());
+                        }
+                        continue;
+                    }
                     switch (typeLiteral) {
                         case "long":
                         case "int":
@@ -142,11 +262,12 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                             new IntegerLiteralExpr("0")));
                             break;
                         default:
-                            if (annotatedWith(param, HostRefParam.class)) {
+                            if (directArgMethod(typeLiteral) != null) {
+                                // written into guest memory, no ref and no callback
                                 arguments.add(
                                         new MethodCallExpr(
                                                 new NameExpr("go"),
-                                                new SimpleName("allocJavaObj"),
+                                                new SimpleName(directArgMethod(typeLiteral)),
                                                 NodeList.nodeList(new NameExpr("arg" + i))));
                             } else {
                                 throw new IllegalArgumentException(
@@ -159,22 +280,90 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                 }
 
                 var methodBody = overriddenMethod.createBody();
+                borrowedRefs.forEach(methodBody::addStatement);
+
+                MethodCallExpr invocationHandle;
+                if (arguments.isEmpty()) {
+                    invocationHandle =
+                            new MethodCallExpr(
+                                    new NameExpr(functionField),
+                                    new SimpleName("call"),
+                                    NodeList.nodeList());
+                } else {
+                    classDef.addFieldWithInitializer(
+                            parseType("long[]"),
+                            argsField,
+                            new ArrayCreationExpr(
+                                    parseType("long"),
+                                    NodeList.nodeList(
+                                            new ArrayCreationLevel(
+                                                    new IntegerLiteralExpr(
+                                                            String.valueOf(arguments.size())))),
+                                    null),
+                            Modifier.Keyword.PRIVATE,
+                            Modifier.Keyword.FINAL);
+                    for (int i = 0; i < arguments.size(); i++) {
+                        methodBody.addStatement(
+                                new AssignExpr(
+                                        new ArrayAccessExpr(
+                                                new NameExpr(argsField),
+                                                new IntegerLiteralExpr(String.valueOf(i))),
+                                        arguments.get(i),
+                                        AssignExpr.Operator.ASSIGN));
+                    }
+                    invocationHandle =
+                            new MethodCallExpr(
+                                    new NameExpr(functionField),
+                                    new SimpleName("apply"),
+                                    NodeList.nodeList(new NameExpr(argsField)));
+                }
 
-                var invocationHandle =
+                var pooledInvocation =
                         new MethodCallExpr(
-                                new NameExpr("go"),
-                                new SimpleName("exec"),
-                                NodeList.nodeList(
-                                        new StringLiteralExpr(name),
-                                        new ArrayCreationExpr(
-                                                parseType("long"),
-                                                new NodeList<>(new ArrayCreationLevel()),
-                                                new ArrayInitializerExpr(
-                                                        NodeList.nodeList(arguments)))));
-
-                var hasReturn = extractHasReturn(executable);
+                                new MethodCallExpr(
+                                        (asyncResult != null)
+                                                ? new NameExpr("go")
+                                                : new MethodCallExpr(
+                                                        new NameExpr("lease"),
+                                                        new SimpleName("go"),
+                                                        NodeList.nodeList()),
+                                        new SimpleName("binding"),
+                                        NodeList.nodeList(
+                                                new ClassExpr(parseType(className)),
+                                                new MethodReferenceExpr(
+                                                        new TypeExpr(parseType(className)),
+                                                        null,
+                                                        "new"))),
+                                new SimpleName(callName),
+                                forwarded);
+                var leaseResource =
+                        new VariableDeclarationExpr(
+                                new VariableDeclarator(
+                                        parseType("GoPool.Lease"),
+                                        "lease",
+                                        new MethodCallExpr(
+                                                new NameExpr("pool"),
+                                                new SimpleName("lease"),
+                                                NodeList.nodeList())));
+
+                var hasReturn = !returnTypeName.equals("void");
+                pooledMethod.setBody(
+                        new BlockStmt()
+                                .addStatement(
+                                        new TryStmt(
+                                                NodeList.nodeList(leaseResource),
+                                                new BlockStmt()
+                                                        .addStatement(
+                                                                (hasReturn)
+                                                                        ? new ReturnStmt(
+                                                                                pooledInvocation)
+                                                                        : new ExpressionStmt(
+                                                                                pooledInvocation)),
+                                                NodeList.nodeList(),
+                                                null)));
                 if (hasReturn) {
-                    var returnType = parseType(executable.getReturnType().toString());
+                    var returnType = parseType(returnTypeName);
+                    pooledMethod.setType(returnType);
                     var primitiveReturn = false;
                     switch (returnType.asString()) {
                         case "int":
@@ -187,7 +376,37 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
 
                     overriddenMethod.setType(returnType);
 
-                    if (executable.getReturnType().toString().equals("boolean")) {
+                    // owned refs are freed once read
+                    var refAccess = "getJava";
+                    if (annotatedWith(executable, ReturnsHostRef.class)) {
+                        switch (executable.getAnnotation(ReturnsHostRef.class).value()) {
+                            case OWNED:
+                                refAccess = "takeJava";
+                                break;
+                            case GUEST:
+                            case BORROWED:
+                                break;
+                            default:
+                                throw new IllegalArgumentException(
+                                        "unsupported ownership of the result of function "
+                                                + member.getSimpleName().toString());
+                        }
+                    }
+                    var refSuffix = primitiveRefSuffix(returnType.asString());
+                    if (refSuffix != null && annotatedWith(executable, ReturnsHostRef.class)) {
+                        methodBody.addStatement(
+                                new ReturnStmt(
+                                        new MethodCallExpr(
+                                                new NameExpr("go"),
+                                                new SimpleName(refAccess + refSuffix),
+                                                NodeList.nodeList(
+                                                        new CastExpr(
+                                                                parseType("int"),
+                                                                new ArrayAccessExpr(
+                                                                        invocationHandle,
+                                                                        new IntegerLiteralExpr(
+                                                                                0)))))));
+                    } else if (returnTypeName.equals("boolean")) {
                         methodBody.addStatement(
                                 new ReturnStmt(
                                         new EnclosedExpr(
@@ -197,7 +416,7 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                                                 new IntegerLiteralExpr(0)),
                                                         new IntegerLiteralExpr(0),
                                                         BinaryExpr.Operator.GREATER))));
-                    } else if (executable.getReturnType().toString().equals("float")) {
+                    } else if (returnTypeName.equals("float")) {
                         methodBody.addStatement(
                                 new ReturnStmt(
                                         new MethodCallExpr(
@@ -207,7 +426,7 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                                         new ArrayAccessExpr(
                                                                 invocationHandle,
                                                                 new IntegerLiteralExpr(0))))));
-                    } else if (executable.getReturnType().toString().equals("double")) {
+                    } else if (returnTypeName.equals("double")) {
                         methodBody.addStatement(
                                 new ReturnStmt(
                                         new MethodCallExpr(
@@ -217,6 +436,18 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                                         new ArrayAccessExpr(
                                                                 invocationHandle,
                                                                 new IntegerLiteralExpr(0))))));
+                    } else if (!annotatedWith(executable, ReturnsHostRef.class)
+                            && directReturnMethod(returnType.asString()) != null) {
+                        methodBody.addStatement(
+                                new ReturnStmt(
+                                        new MethodCallExpr(
+                                                new NameExpr("go"),
+                                                new SimpleName(
+                                                        directReturnMethod(returnType.asString())),
+                                                NodeList.nodeList(
+                                                        new ArrayAccessExpr(
+                                                                invocationHandle,
+                                                                new IntegerLiteralExpr(0))))));
                     } else if (!primitiveReturn
                             && !annotatedWith(executable, ReturnsHostRef.class)) {
                         throw new IllegalArgumentException(
@@ -231,7 +462,7 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                                 returnType,
                                                 new MethodCallExpr(
                                                         new NameExpr("go"),
-                                                        new SimpleName("getJavaObj"),
+                                                        new SimpleName(refAccess + "Obj"),
                                                         NodeList.nodeList(
                                                                 new CastExpr(
                                                                         parseType("int"),
@@ -251,6 +482,67 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                 } else {
                     methodBody.addStatement(invocationHandle);
                 }
+
+                if (!releases.isEmpty()) {
+                    // the call itself is the last statement
+                    var statements = methodBody.getStatements();
+                    var call = statements.remove(statements.size() - 1);
+                    methodBody.addStatement(
+                            new TryStmt(
+                                    new BlockStmt().addStatement(call),
+                                    NodeList.nodeList(),
+                                    new BlockStmt(releases)));
+                }
+
+                if (asyncResult != null) {
+                    var futureType = parseType(executable.getReturnType().toString());
+                    var asyncMethod =
+                            classDef.addMethod(methodName, Modifier.Keyword.PUBLIC)
+                                    .addAnnotation(Override.class)
+                                    .setType(futureType);
+                    for (int i = 0; i < executable.getParameters().size(); i++) {
+                        asyncMethod.addParameter(
+                                executable.getParameters().get(i).asType().toString(), "arg" + i);
+                    }
+                    // serialized with the other calls submitted to the instance
+                    asyncMethod.setBody(
+                            new BlockStmt()
+                                    .addStatement(
+                                            new ReturnStmt(
+                                                    new MethodCallExpr(
+                                                            new NameExpr("go"),
+                                                            new SimpleName("submit"),
+                                                            NodeList.nodeList(
+                                                                    new LambdaExpr(
+                                                                            NodeList.nodeList(),
+                                                                            submittedBody(
+                                                                                    new MethodCallExpr(
+                                                                                            null,
+                                                                                            new SimpleName(
+                                                                                                    callName),
+                                                                                            argNames(
+                                                                                                    forwarded
+                                                                                                            .size())),
+                                                                                    hasReturn)))))));
+                    // the lease is taken on the executor of the pool
+                    pooledMethod
+                            .setType(futureType)
+                            .setBody(
+                                    new BlockStmt()
+                                            .addStatement(
+                                                    new ReturnStmt(
+                                                            new MethodCallExpr(
+                                                                    new NameExpr("pool"),
+                                                                    new SimpleName("submit"),
+                                                                    NodeList.nodeList(
+                                                                            new LambdaExpr(
+                                                                                    new Parameter(
+                                                                                            new UnknownType(),
+                                                                                            "go"),
+                                                                                    submittedBody(
+                                                                                            pooledInvocation,
+                                                                                            hasReturn)))))));
+                }
             }
         }
 
@@ -266,6 +558,18 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
                                                         parseClassOrInterfaceType(className),
                                                         NodeList.nodeList(new NameExpr("go"))))));
 
+        classDef.addMethod("create", Modifier.Keyword.PUBLIC, Modifier.Keyword.STATIC)
+                .setType(typeName)
+                .addParameter(parseType("GoPool"), "pool")
+                .setBody(
+                        new BlockStmt()
+                                .addStatement(
+                                        new ReturnStmt(
+                                                new ObjectCreationExpr(
+                                                        null,
+                                                        parseClassOrInterfaceType("Pooled"),
+                                                        NodeList.nodeList(new NameExpr("pool"))))));
+
         String prefix = (pkg.isUnnamed()) ? "" : packageName + ".";
         String qualifiedName = prefix + type.getSimpleName() + "_Invokables";
         try (Writer writer = filer().createSourceFile(qualifiedName, type).openWriter()) {
@@ -274,4 +578,47 @@ public final class InvokablesProcessor extends Go4JAbstractProcessor {
             log(ERROR, format("Failed to create %s file: %s", qualifiedName, e), null);
         }
     }
+
+    // T of a CompletableFuture<T> return type, unboxed, or null for other return types
+    private static String asyncResultType(ExecutableElement executable) {
+        var returnType = executable.getReturnType();
+        if (!(returnType instanceof DeclaredType)
+                || !returnType.toString().startsWith(CompletableFuture.class.getName() + "<")) {
+            return null;
+        }
+        var result = ((DeclaredType) returnType).getTypeArguments().get(0).toString();
+        switch (result) {
+            case "java.lang.Void":
+                return "void";
+            case "java.lang.Integer":
+                return "int";
+            case "java.lang.Long":
+                return "long";
+            case "java.lang.Float":
+                return "float";
+            case "java.lang.Double":
+                return "double";
+            case "java.lang.Boolean":
+                return "boolean";
+            default:
+                return result;
+        }
+    }
+
+    private static NodeList<Expression> argNames(int count) {
+        NodeList<Expression> names = NodeList.nodeList();
+        for (int i = 0; i < count; i++) {
+            names.add(new NameExpr("arg" + i));
+        }
+        return names;
+    }
+
+    private static BlockStmt submittedBody(MethodCallExpr call, boolean hasReturn) {
+        if (hasReturn) {
+            return new BlockStmt().addStatement(new ReturnStmt(call));
+        }
+        return new BlockStmt()
+                .addStatement(call)
+                .addStatement(new ReturnStmt(new NullLiteralExpr()));
+    }
 }